@@ -0,0 +1,121 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@link LeafKernel} on the Vector API: each lane of a {@link LongVector} holds one action's
+ * cell masks, so the bitboard shifts of {@link Bitboards} run for several actions per instruction.
+ *
+ * Only the mover's moves and the tight cells are vectorized. The opponent's moves are one AND and a
+ * popcount per action, which the scalar loop already does at memory speed, and the territory flood
+ * fills loop a data-dependent number of times, which on JDK 17 keeps vectors boxed across the loop;
+ * both measured slower here than on the scalar loops, so they stay there, as do the rows past the
+ * last full vector. Popcounts are done with shifts and adds because the incubator API of JDK 17 has
+ * no bit-count operator.
+ *
+ * Kept out of {@code src} because it needs {@code --add-modules jdk.incubator.vector} to compile
+ * and run; {@link LeafKernel#load()} picks it up by name when both are present.
+ */
+final class VectorLeafKernel implements LeafKernel {
+  private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+  // Same lane count as LONGS, so the long counts narrow to ints lane for lane
+  private static final VectorSpecies<Integer> INTS =
+          VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+
+  // The features computed here; the rest go through the scalar loops
+  private static final int VECTORIZED = Features.bit(Features.MY_MOVES_AFTER) | Features.bit(Features.TIGHT_CELLS);
+
+  private static final long BOARD = Bitboards.BOARD;
+  private static final long FIRST_COLUMN = 0x0101010101010101L & BOARD;
+  private static final long LAST_COLUMN = FIRST_COLUMN << (State.COLUMN_COUNT - 1);
+
+  VectorLeafKernel() {
+    if (LONGS.length() < 2) throw new IllegalStateException("no vector registers wider than one long");
+  }
+
+  @Override
+  public void computeColumns(int mask, long opponentPawn, long[] moverPawns, long[] availables,
+                             int from, int to, int[][] columns) {
+    // One small loop per feature: vectors only stay in registers (instead of being boxed) when the
+    // loop and the helpers it calls are all inlined into one compilation.
+    int bound = from + LONGS.loopBound(to - from);
+    if ((mask & Features.bit(Features.MY_MOVES_AFTER)) != 0) {
+      moverMoves(opponentPawn, moverPawns, availables, from, bound, columns[Features.MY_MOVES_AFTER]);
+    }
+    if ((mask & Features.bit(Features.TIGHT_CELLS)) != 0) {
+      tightCells(availables, from, bound, columns[Features.TIGHT_CELLS]);
+    }
+    LeafBatch.scalarColumns(mask & ~VECTORIZED, opponentPawn, moverPawns, availables, from, bound, columns);
+    LeafBatch.scalarColumns(mask, opponentPawn, moverPawns, availables, bound, to, columns);
+  }
+
+  private static void moverMoves(long opponentPawn, long[] moverPawns, long[] availables, int from, int to, int[] out) {
+    for (int i = from; i < to; i += LONGS.length()) {
+      LongVector mover = LongVector.fromArray(LONGS, moverPawns, i);
+      LongVector moves = expand(mover).and(LongVector.fromArray(LONGS, availables, i))
+              .lanewise(VectorOperators.AND_NOT, mover.or(opponentPawn));
+      store(bitCount(moves), out, i);
+    }
+  }
+
+  private static void tightCells(long[] availables, int from, int to, int[] out) {
+    for (int i = from; i < to; i += LONGS.length()) {
+      LongVector available = LongVector.fromArray(LONGS, availables, i);
+      LongVector removed = available.lanewise(VectorOperators.NOT).and(BOARD);
+      store(bitCount(available.and(withThreeNeighborsIn(removed))), out, i);
+    }
+  }
+
+  private static LongVector expand(LongVector mask) {
+    LongVector row = mask
+            .or(mask.lanewise(VectorOperators.AND_NOT, LAST_COLUMN).lanewise(VectorOperators.LSHL, 1))
+            .or(mask.lanewise(VectorOperators.AND_NOT, FIRST_COLUMN).lanewise(VectorOperators.LSHR, 1));
+    return row
+            .or(row.lanewise(VectorOperators.LSHL, State.COLUMN_COUNT))
+            .or(row.lanewise(VectorOperators.LSHR, State.COLUMN_COUNT))
+            .and(BOARD);
+  }
+
+  private static LongVector withThreeNeighborsIn(LongVector mask) {
+    LongVector west = mask.lanewise(VectorOperators.AND_NOT, LAST_COLUMN).lanewise(VectorOperators.LSHL, 1);
+    LongVector east = mask.lanewise(VectorOperators.AND_NOT, FIRST_COLUMN).lanewise(VectorOperators.LSHR, 1);
+    LongVector atLeastOne = LongVector.zero(LONGS), atLeastTwo = atLeastOne, atLeastThree = atLeastOne;
+    // The eight shifted copies, picked by a switch rather than read from an array of vectors so
+    // the JIT unrolls the loop and keeps everything in registers
+    for (int k = 0; k < 8; k++) {
+      LongVector x;
+      switch (k) {
+        case 0: x = west; break;
+        case 1: x = east; break;
+        case 2: x = mask.lanewise(VectorOperators.LSHL, State.COLUMN_COUNT); break;
+        case 3: x = west.lanewise(VectorOperators.LSHL, State.COLUMN_COUNT); break;
+        case 4: x = east.lanewise(VectorOperators.LSHL, State.COLUMN_COUNT); break;
+        case 5: x = mask.lanewise(VectorOperators.LSHR, State.COLUMN_COUNT); break;
+        case 6: x = west.lanewise(VectorOperators.LSHR, State.COLUMN_COUNT); break;
+        default: x = east.lanewise(VectorOperators.LSHR, State.COLUMN_COUNT); break;
+      }
+      atLeastThree = atLeastThree.or(atLeastTwo.and(x));
+      atLeastTwo = atLeastTwo.or(atLeastOne.and(x));
+      atLeastOne = atLeastOne.or(x);
+    }
+    return atLeastThree.and(BOARD);
+  }
+
+  private static LongVector bitCount(LongVector x) {
+    x = x.sub(x.lanewise(VectorOperators.LSHR, 1).and(0x5555555555555555L));
+    x = x.and(0x3333333333333333L).add(x.lanewise(VectorOperators.LSHR, 2).and(0x3333333333333333L));
+    x = x.add(x.lanewise(VectorOperators.LSHR, 4)).and(0x0F0F0F0F0F0F0F0FL);
+    return x.mul(0x0101010101010101L).lanewise(VectorOperators.LSHR, 56);
+  }
+
+  private static void store(LongVector counts, int[] column, int i) {
+    ((IntVector) counts.castShape(INTS, 0)).intoArray(column, i);
+  }
+}
@@ -4,10 +4,24 @@
 
 package isola;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * Factory class to create different types of agents.
  */
 public class AgentFactory {
+  /** The weights trained by {@link NnueTrainer} that ship with the project, relative to its root. */
+  public static final Path DEFAULT_NNUE_WEIGHTS = Paths.get("weights", "nnue-h32.bin");
+
+  // Networks are immutable and keep their scratch per thread, so every agent can share one.
+  private static final ConcurrentMap<Path, NnueEvaluator> NNUE_NETWORKS = new ConcurrentHashMap<>();
+
   public static Agent random() {
     return new RandomAgent();
   }
@@ -17,4 +31,79 @@ public class AgentFactory {
   public static Agent heuristicTwo() {
     return new MinMaxAgent(new HeuristicTwo(), 3, true);
   }
+  public static Agent heuristicThree() {
+    return new MinMaxAgent(new HeuristicThree(), 3, true);
+  }
+  public static Agent nnue(Path weights) throws IOException {
+    return new MinMaxAgent(loadNnue(weights), 3, true);
+  }
+
+  /**
+   * Returns the network in a weights file, reading the file only the first time it is asked for.
+   * @param weights the weights file
+   * @return the shared network
+   * @throws IOException if the file cannot be read
+   */
+  static NnueEvaluator loadNnue(Path weights) throws IOException {
+    Path key = weights.toAbsolutePath().normalize();
+    NnueEvaluator network = NNUE_NETWORKS.get(key);
+    if (network != null) return network;
+    network = NnueEvaluator.load(key);
+    NnueEvaluator raced = NNUE_NETWORKS.putIfAbsent(key, network);
+    return (raced != null) ? raced : network;
+  }
+
+  /**
+   * Create an agent from a command-line name: random, jerry, casey, territory, nnue (the shipped
+   * weights) or nnue:&lt;weights file&gt;.
+   * The search agents take options after an @, separated by slashes: a depth, a time limit per move
+   * (the agent deepens up to the depth and plays the best move of the last depth it finished)
+   * and search features to switch off or on (see {@link SearchFeature}), e.g. casey@4,
+   * casey@6/500ms or casey@4/-mdp/-batch. Any agent can be prefixed with solver: to switch to
+   * proof-number solving in the endgame. NNUE weights files are read once per process and the
+   * network is shared by all the agents that use it.
+   * @param spec the agent name
+   * @return a new agent
+   * @throws IOException if the agent needs a file that cannot be read
+   * @throws IllegalArgumentException if the name or an option is not recognised
+   */
+  public static Agent byName(String spec) throws IOException {
+    if (spec.startsWith("solver:")) return new SolverAgent(byName(spec.substring(7)), 16, 2_000_000, 5_000);
+    int depth = 3;
+    long millis = 0;
+    Map<SearchFeature, Boolean> features = new EnumMap<>(SearchFeature.class);
+    int at = spec.lastIndexOf('@');
+    if (at > 0) {
+      for (String option : spec.substring(at + 1).split("/")) {
+        if (option.startsWith("-") || option.startsWith("+")) {
+          features.put(SearchFeature.bySpecName(option.substring(1)), option.startsWith("+"));
+        } else if (option.endsWith("ms")) {
+          millis = Long.parseLong(option.substring(0, option.length() - 2));
+        } else {
+          depth = Integer.parseInt(option);
+        }
+      }
+      spec = spec.substring(0, at);
+    }
+
+    Agent agent;
+    if (spec.startsWith("nnue:")) {
+      agent = new MinMaxAgent(loadNnue(Paths.get(spec.substring(5))), depth, true);
+    } else {
+      switch (spec) {
+        case "random": agent = random(); break;
+        case "jerry": agent = new MinMaxAgent(new HeuristicOne(), depth, true); break;
+        case "casey": agent = new MinMaxAgent(new HeuristicTwo(), depth, true); break;
+        case "territory": agent = new MinMaxAgent(new HeuristicThree(), depth, true); break;
+        case "nnue": agent = new MinMaxAgent(loadNnue(DEFAULT_NNUE_WEIGHTS), depth, true); break;
+        default: throw new IllegalArgumentException("unknown agent: " + spec);
+      }
+    }
+    if (millis == 0 && features.isEmpty()) return agent;
+    if (!(agent instanceof MinMaxAgent)) throw new IllegalArgumentException(spec + " takes no time limit or search features");
+    MinMaxAgent search = (MinMaxAgent) agent;
+    search.setTimeLimit(millis);
+    for (Map.Entry<SearchFeature, Boolean> feature : features.entrySet()) search.setSearchFeature(feature.getKey(), feature.getValue());
+    return search;
+  }
 }
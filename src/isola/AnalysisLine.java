@@ -0,0 +1,33 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One ranked root move from {@link MinMaxAgent#analyze(State, int)}: the move, its exact search
+ * score for the player to move and the line the search expects to follow.
+ */
+public final class AnalysisLine {
+  public final int rank;
+  public final Action move;
+  public final int score;
+  public final int depth;
+  public final List<Action> principalVariation;
+
+  public AnalysisLine(int rank, Action move, int score, int depth, List<Action> principalVariation) {
+    this.rank = rank;
+    this.move = move;
+    this.score = score;
+    this.depth = depth;
+    this.principalVariation = Collections.unmodifiableList(principalVariation);
+  }
+
+  @Override public String toString() {
+    StringBuilder pv = new StringBuilder();
+    for (Action a : principalVariation) pv.append(' ').append(EngineProtocol.formatMove(a));
+    return String.format("%d. %s score %s depth %d pv%s", rank, EngineProtocol.formatMove(move), MinMaxAgent.formatScore(score), depth, pv);
+  }
+}
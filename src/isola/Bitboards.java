@@ -0,0 +1,69 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+/**
+ * Helpers for 48-bit cell masks (bit = row * 8 + column, so each row is one byte).
+ * Whole-board operations such as "every neighbour of these cells" are a handful of shifts and
+ * masks, which lets flood fills run one ring per step for the whole board at once.
+ */
+final class Bitboards {
+  static final long BOARD = (1L << (State.ROW_COUNT * State.COLUMN_COUNT)) - 1;
+
+  private static final long FIRST_COLUMN = 0x0101010101010101L & BOARD;
+  private static final long LAST_COLUMN = FIRST_COLUMN << (State.COLUMN_COUNT - 1);
+
+  private Bitboards() {}
+
+  /**
+   * Returns the cells in the mask together with all their neighbours (king moves).
+   * @param mask
+   * @return
+   */
+  static long expand(long mask) {
+    long row = mask | ((mask & ~LAST_COLUMN) << 1) | ((mask & ~FIRST_COLUMN) >>> 1);
+    return (row | (row << State.COLUMN_COUNT) | (row >>> State.COLUMN_COUNT)) & BOARD;
+  }
+
+  /**
+   * Returns the board cells that have at least three neighbours in the mask. The eight shifted
+   * copies of the mask are fed through saturating bit-sliced counters, so every cell is counted at once.
+   * @param mask
+   * @return
+   */
+  static long withThreeNeighborsIn(long mask) {
+    long west = (mask & ~LAST_COLUMN) << 1;   // bit set where the cell to the left is in the mask
+    long east = (mask & ~FIRST_COLUMN) >>> 1;
+    long[] shifted = {
+        west, east,
+        mask << State.COLUMN_COUNT, west << State.COLUMN_COUNT, east << State.COLUMN_COUNT,
+        mask >>> State.COLUMN_COUNT, west >>> State.COLUMN_COUNT, east >>> State.COLUMN_COUNT
+    };
+    long atLeastOne = 0, atLeastTwo = 0, atLeastThree = 0;
+    for (long x : shifted) {
+      atLeastThree |= atLeastTwo & x;
+      atLeastTwo |= atLeastOne & x;
+      atLeastOne |= x;
+    }
+    return atLeastThree & BOARD;
+  }
+
+  /**
+   * Returns every cell reachable from {@code start} by king moves through {@code open} cells,
+   * not counting {@code start} itself unless it is open.
+   * @param start the starting cells
+   * @param open the cells that may be walked through
+   * @return
+   */
+  static long floodFill(long start, long open) {
+    long reached = 0;
+    long frontier = start;
+    while (true) {
+      long next = expand(frontier) & open & ~reached;
+      if (next == 0) return reached;
+      reached |= next;
+      frontier = next;
+    }
+  }
+}
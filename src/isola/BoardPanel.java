@@ -10,15 +10,30 @@ import java.awt.event.MouseEvent;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import javax.swing.*;
 
 /**
  * A JPanel that displays the game board and pieces.
  */
 public class BoardPanel extends JPanel {
+  static final Color PLAYER_ONE_COLOR = new Color(30,180,80);
+  static final Color PLAYER_TWO_COLOR = new Color(60,120,220);
+  private static final Color BACKGROUND_COLOR = new Color(245,245,245);
+  private static final Color CELL_COLOR = new Color(245,238,195);
+  private static final Color REMOVED_COLOR = new Color(230,230,230);
+  private static final Color HIGHLIGHT_COLOR = new Color(200,230,255);
+  private static final Color LAST_ACTION_COLOR = new Color(220,90,70);
+  private static final Color ANALYSIS_COLOR = new Color(150,60,200);
+
   private State state;
   private final int cellWidth = 64, cellHeight = 64, pad = 16;
   private final Set<Integer> highlights = new HashSet<>();
+  private Action lastAction = null;
+  private Action analysisMove = null;
+  private List<AnalysisLine> hints = Collections.emptyList();
   private java.util.function.Consumer<Coordinates> onClick;
 
   /**
@@ -28,7 +43,7 @@ public class BoardPanel extends JPanel {
   public BoardPanel(State init) {
     this.state = init;
     setPreferredSize(new Dimension(pad*2 + State.COLUMN_COUNT*cellWidth, pad*2 + State.ROW_COUNT*cellHeight));
-    setBackground(new Color(245,245,245));
+    setBackground(BACKGROUND_COLOR);
     addMouseListener(new MouseAdapter() {
       @Override public void mousePressed(MouseEvent e){
         int c = (e.getX()-pad)/cellWidth;
@@ -51,6 +66,25 @@ public class BoardPanel extends JPanel {
   }
   public void clearHighlights(){ highlights.clear(); repaint(); }
 
+  /**
+   * Mark the move that led to the current state, or pass null to clear the marker.
+   * @param a the last action played
+   */
+  public void setLastAction(Action a){ this.lastAction = a; repaint(); }
+
+  /**
+   * Mark the move a running search currently prefers, or pass null to clear the marker.
+   * @param a the move to mark
+   */
+  public void setAnalysisMove(Action a){ this.analysisMove = a; repaint(); }
+
+  /**
+   * Show ranked hint moves: each line's rank is drawn on its destination and, smaller, on the cell
+   * it removes. Pass an empty list to clear them.
+   * @param lines the lines from {@link MinMaxAgent#analyze(State, int)}
+   */
+  public void setHints(List<AnalysisLine> lines){ this.hints = new ArrayList<>(lines); repaint(); }
+
   /**
    * Paint the board and pieces.
    */
@@ -60,20 +94,49 @@ public class BoardPanel extends JPanel {
     g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON);
     for(int r=0;r<State.ROW_COUNT;r++) for(int c=0;c<State.COLUMN_COUNT;c++){
       int x=pad+c*cellWidth, y=pad+r*cellHeight;
-      g2.setColor(new Color(245,238,195));
+      g2.setColor(CELL_COLOR);
       g2.fillRect(x,y,cellWidth,cellHeight);
       if(!state.isCellAvailable(r,c)){
-        g2.setColor(new Color(230,230,230));
+        g2.setColor(REMOVED_COLOR);
         g2.fillRect(x+6,y+6,cellWidth-12,cellHeight-12);
       } else if(highlights.contains(r*100+c)){
-        g2.setColor(new Color(200,230,255));
+        g2.setColor(HIGHLIGHT_COLOR);
         g2.fillRect(x+4,y+4,cellWidth-8,cellHeight-8);
       }
       g2.setColor(Color.GRAY);
       g2.drawRect(x,y,cellWidth,cellHeight);
     }
-    drawPawn(g2,state.playerOnePosition(),new Color(30,180,80));
-    drawPawn(g2,state.playerTwoPosition(),new Color(60,120,220));
+    if(lastAction!=null){
+      g2.setColor(LAST_ACTION_COLOR);
+      int x=pad+lastAction.tokenToRemove.columnIndex*cellWidth, y=pad+lastAction.tokenToRemove.rowIndex*cellHeight;
+      g2.drawRect(x+6,y+6,cellWidth-12,cellHeight-12);
+      x=pad+lastAction.destinationCell.columnIndex*cellWidth; y=pad+lastAction.destinationCell.rowIndex*cellHeight;
+      g2.drawRect(x+2,y+2,cellWidth-4,cellHeight-4);
+    }
+    if(analysisMove!=null){
+      g2.setColor(ANALYSIS_COLOR);
+      Stroke stroke=g2.getStroke();
+      g2.setStroke(new BasicStroke(3));
+      int x=pad+analysisMove.destinationCell.columnIndex*cellWidth, y=pad+analysisMove.destinationCell.rowIndex*cellHeight;
+      g2.drawOval(x+6,y+6,cellWidth-12,cellHeight-12);
+      x=pad+analysisMove.tokenToRemove.columnIndex*cellWidth; y=pad+analysisMove.tokenToRemove.rowIndex*cellHeight;
+      g2.drawLine(x+14,y+14,x+cellWidth-14,y+cellHeight-14);
+      g2.drawLine(x+cellWidth-14,y+14,x+14,y+cellHeight-14);
+      g2.setStroke(stroke);
+    }
+    drawPawn(g2,state.playerOnePosition(),PLAYER_ONE_COLOR);
+    drawPawn(g2,state.playerTwoPosition(),PLAYER_TWO_COLOR);
+    g2.setColor(ANALYSIS_COLOR);
+    Font font=g2.getFont();
+    for(AnalysisLine line:hints){
+      int x=pad+line.move.destinationCell.columnIndex*cellWidth, y=pad+line.move.destinationCell.rowIndex*cellHeight;
+      g2.setFont(font.deriveFont(Font.BOLD,18f));
+      g2.drawString(Integer.toString(line.rank),x+6,y+20);
+      x=pad+line.move.tokenToRemove.columnIndex*cellWidth; y=pad+line.move.tokenToRemove.rowIndex*cellHeight;
+      g2.setFont(font.deriveFont(Font.PLAIN,12f));
+      g2.drawString("x"+line.rank,x+cellWidth-20,y+cellHeight-6);
+    }
+    g2.setFont(font);
   }
 
   /**
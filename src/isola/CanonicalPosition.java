@@ -0,0 +1,129 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+/**
+ * The canonical form of a position under the board reflections and the swap of player colours.
+ *
+ * The key describes the position relative to the side to move (available cells, the mover's pawn,
+ * the other pawn), which takes care of the colour swap; of the four reflections of that, the one
+ * with the smallest key is canonical. Positions that are equivalent get the same key, so tables
+ * keyed on it need a single entry per equivalence class. Scores stored for the side to move can
+ * be shared as-is; moves are stored in canonical orientation and mapped back with
+ * {@link #fromCanonical(Action)}.
+ *
+ * Key layout: bits 0-47 available cells, bits 48-53 the mover's pawn cell, bits 54-59 the other pawn cell
+ * (and bit 60 the side to move in {@link #exact(State)} keys).
+ */
+public final class CanonicalPosition {
+  public final long key;
+  public final Symmetry symmetry;
+  public final boolean coloursSwapped;
+
+  CanonicalPosition(long key, Symmetry symmetry, boolean coloursSwapped) {
+    this.key = key;
+    this.symmetry = symmetry;
+    this.coloursSwapped = coloursSwapped;
+  }
+
+  /**
+   * Computes the canonical form of a position.
+   * @param state the position
+   * @return its canonical key and the transform that produces it
+   */
+  public static CanonicalPosition of(State state) {
+    long mask = state.availableMask();
+    boolean swapped = state.currentPlayer() == 2;
+    int mover = (swapped ? state.playerTwoPosition() : state.playerOnePosition()).cellIndex();
+    int other = (swapped ? state.playerOnePosition() : state.playerTwoPosition()).cellIndex();
+
+    long bestKey = Long.MAX_VALUE;
+    Symmetry best = Symmetry.IDENTITY;
+    for (Symmetry s : Symmetry.values()) {
+      long key = key(s.mapMask(mask), s.mapCell(mover), s.mapCell(other));
+      if (key < bestKey) {
+        bestKey = key;
+        best = s;
+      }
+    }
+    return new CanonicalPosition(bestKey, best, swapped);
+  }
+
+  /**
+   * Keys a position without folding in reflections or the colour swap, for tables whose scores are
+   * not shared between equivalent positions (see {@link Heuristic#isSymmetric()}). Bit 60 holds
+   * the side to move.
+   * @param state the position
+   * @return its key, with the identity transform
+   */
+  public static CanonicalPosition exact(State state) {
+    boolean swapped = state.currentPlayer() == 2;
+    int mover = (swapped ? state.playerTwoPosition() : state.playerOnePosition()).cellIndex();
+    int other = (swapped ? state.playerOnePosition() : state.playerTwoPosition()).cellIndex();
+    long key = key(state.availableMask(), mover, other) | (swapped ? 1L << 60 : 0);
+    return new CanonicalPosition(key, Symmetry.IDENTITY, swapped);
+  }
+
+  /**
+   * Packs a side-to-move relative position into a key.
+   * @param availableMask available cells
+   * @param moverCell cell of the pawn of the player to move
+   * @param otherCell cell of the other pawn
+   * @return
+   */
+  static long key(long availableMask, int moverCell, int otherCell) {
+    return availableMask | ((long) moverCell << 48) | ((long) otherCell << 54);
+  }
+
+  /**
+   * Maps an action in the original position to the canonical orientation.
+   * @param action
+   * @return
+   */
+  public Action toCanonical(Action action) {
+    return symmetry.map(action);
+  }
+
+  /**
+   * Maps an action in the canonical orientation back to the original position.
+   * @param action
+   * @return
+   */
+  public Action fromCanonical(Action action) {
+    return symmetry.inverse().map(action);
+  }
+
+  /**
+   * Maps a player number of the original position to the canonical one, where the side to move is player 1.
+   * @param player 1 or 2
+   * @return
+   */
+  public int toCanonicalPlayer(int player) {
+    return coloursSwapped ? 3 - player : player;
+  }
+
+  /**
+   * Rebuilds the canonical position as a state, with the side to move as player 1.
+   * @return
+   */
+  public State toState() {
+    long mask = key & ((1L << 48) - 1);
+    boolean[][] cells = new boolean[State.ROW_COUNT][State.COLUMN_COUNT];
+    for (int cell = 0; cell < State.ROW_COUNT * State.COLUMN_COUNT; cell++) {
+      cells[cell / State.COLUMN_COUNT][cell % State.COLUMN_COUNT] = (mask & (1L << cell)) != 0;
+    }
+    return new State(cells,
+            Coordinates.ofCellIndex((int) (key >>> 48) & 63),
+            Coordinates.ofCellIndex((int) (key >>> 54) & 63),
+            1);
+  }
+
+  @Override public boolean equals(Object o) {
+    return o instanceof CanonicalPosition && ((CanonicalPosition) o).key == key;
+  }
+
+  @Override public int hashCode() {
+    return Long.hashCode(key);
+  }
+}
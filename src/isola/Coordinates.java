@@ -20,6 +20,23 @@ public final class Coordinates {
     this.columnIndex = columnIndex;
   }
 
+  /**
+   * Returns the row-major index of this cell (row * COLUMN_COUNT + column), in the range [0, 48).
+   * @return the cell index
+   */
+  public int cellIndex() {
+    return rowIndex * State.COLUMN_COUNT + columnIndex;
+  }
+
+  /**
+   * Create the Coordinates for a row-major cell index.
+   * @param cellIndex the cell index (row * COLUMN_COUNT + column)
+   * @return the matching coordinates
+   */
+  public static Coordinates ofCellIndex(int cellIndex) {
+    return new Coordinates(cellIndex / State.COLUMN_COUNT, cellIndex % State.COLUMN_COUNT);
+  }
+
   /**
    * Two Coordinates are equal if their row and column indices are equal.
    */
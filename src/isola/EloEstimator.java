@@ -0,0 +1,90 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+/**
+ * Bradley-Terry (Elo) ratings from a table of pairwise game results.
+ *
+ * Ratings are the maximum-likelihood fit, computed with the minorisation-maximisation iteration,
+ * with every player also credited one win and one loss against a virtual 0-rated opponent so that
+ * unbeaten or winless players still get finite ratings. Standard errors come from the Fisher
+ * information of each player's games. Ratings are shifted to average 0.
+ */
+final class EloEstimator {
+  static final double ELO_PER_NATURAL_UNIT = 400 / Math.log(10);
+
+  private static final int MAX_ITERATIONS = 10_000;
+  private static final double TOLERANCE = 1e-9;
+
+  private EloEstimator() {}
+
+  /**
+   * Fits ratings to the results.
+   * @param wins wins[i][j] is the number of games player i won against player j
+   * @return the Elo rating of each player
+   */
+  static double[] ratings(int[][] wins) {
+    int n = wins.length;
+    double[] gamma = new double[n];
+    java.util.Arrays.fill(gamma, 1.0);
+    for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+      double change = 0;
+      for (int i = 0; i < n; i++) {
+        double won = 1;                      // virtual win against the anchor
+        double denominator = 2 / (gamma[i] + 1);  // two virtual games against the anchor
+        for (int j = 0; j < n; j++) {
+          if (i == j) continue;
+          won += wins[i][j];
+          int games = wins[i][j] + wins[j][i];
+          if (games > 0) denominator += games / (gamma[i] + gamma[j]);
+        }
+        double updated = won / denominator;
+        change = Math.max(change, Math.abs(Math.log(updated / gamma[i])));
+        gamma[i] = updated;
+      }
+      if (change < TOLERANCE) break;
+    }
+
+    double[] elo = new double[n];
+    double mean = 0;
+    for (int i = 0; i < n; i++) {
+      elo[i] = Math.log(gamma[i]) * ELO_PER_NATURAL_UNIT;
+      mean += elo[i] / n;
+    }
+    for (int i = 0; i < n; i++) elo[i] -= mean;
+    return elo;
+  }
+
+  /**
+   * Standard error of each rating, in Elo.
+   * @param wins the results the ratings were fitted to
+   * @param elo the fitted ratings
+   * @return
+   */
+  static double[] standardErrors(int[][] wins, double[] elo) {
+    int n = wins.length;
+    double[] errors = new double[n];
+    for (int i = 0; i < n; i++) {
+      double information = 0.5;  // the two virtual games, at an even expectation
+      for (int j = 0; j < n; j++) {
+        if (i == j) continue;
+        int games = wins[i][j] + wins[j][i];
+        double p = expectedScore(elo[i], elo[j]);
+        information += games * p * (1 - p);
+      }
+      errors[i] = ELO_PER_NATURAL_UNIT / Math.sqrt(information);
+    }
+    return errors;
+  }
+
+  /**
+   * Expected score of a player rated {@code a} against one rated {@code b}.
+   * @param a
+   * @param b
+   * @return
+   */
+  static double expectedScore(double a, double b) {
+    return 1 / (1 + Math.pow(10, (b - a) / 400));
+  }
+}
@@ -0,0 +1,70 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Exposes an {@link Agent} through the {@link EngineProtocol}, over stdin/stdout or one socket
+ * connection at a time. For many concurrent games use {@link MatchServer}.
+ */
+public class EngineHost {
+  private final Agent agent;
+
+  public EngineHost(Agent agent) {
+    this.agent = agent;
+  }
+
+  /**
+   * Answers protocol commands until "quit" or the end of the input.
+   * @param input where commands are read from
+   * @param output where replies are written to
+   * @throws IOException if reading fails
+   */
+  public void serve(Reader input, Writer output) throws IOException {
+    BufferedReader in = new BufferedReader(input);
+    PrintWriter out = new PrintWriter(output, false);
+    EngineSession session = new EngineSession(agent);
+    String line;
+    while ((line = in.readLine()) != null) {
+      String command = EngineProtocol.command(line);
+      if (command.equals("quit")) break;
+      out.print(command.equals("go") ? EngineSession.search(agent, session.position()) : session.handle(line));
+      out.flush();
+    }
+  }
+
+  /**
+   * Runs an engine from the command line.
+   * @param args the agent name (see {@link AgentFactory#byName(String)}), optionally followed by --port &lt;port&gt;
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("usage: EngineHost <agent> [--port <port>]");
+      System.exit(2);
+    }
+    EngineHost host = new EngineHost(AgentFactory.byName(args[0]));
+    if (args.length >= 3 && args[1].equals("--port")) {
+      try (ServerSocket server = new ServerSocket(Integer.parseInt(args[2]))) {
+        while (true) {
+          try (Socket socket = server.accept()) {
+            host.serve(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8),
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+          }
+        }
+      }
+    }
+    host.serve(new InputStreamReader(System.in, StandardCharsets.UTF_8),
+            new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+  }
+}
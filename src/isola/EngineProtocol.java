@@ -0,0 +1,119 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+/**
+ * Text encoding for the line-based engine protocol spoken by {@link EngineHost}, {@link MatchServer}
+ * and {@link RemoteAgent}. One command per line:
+ *
+ * <pre>
+ * isola                                 -> id name &lt;agent name&gt;, then isolaok
+ * isready                               -> readyok
+ * newgame                               (no reply) back to the start position, player 1 first
+ * position startpos [first 1|2] [moves &lt;move&gt; ...]
+ * position cells &lt;48 x 0|1&gt; &lt;p1 cell&gt; &lt;p2 cell&gt; &lt;to move&gt;
+ * go                                    -> bestmove &lt;move&gt; (or bestmove none if the game is over)
+ * quit                                  closes the session
+ * </pre>
+ *
+ * Cells are written as a column letter and a row number, "a1" being row 0, column 0.
+ * A move is its destination cell followed by the removed cell, e.g. "c2d5". In "position cells"
+ * the 48 flags list the cells row by row, 1 for available. Errors are reported as "error &lt;message&gt;".
+ */
+public final class EngineProtocol {
+  private EngineProtocol() {}
+
+  /**
+   * Returns the command word of a line (its first token), or an empty string for a blank line.
+   * @param line
+   * @return
+   */
+  public static String command(String line) {
+    String trimmed = line.trim();
+    int space = trimmed.indexOf(' ');
+    return (space < 0) ? trimmed : trimmed.substring(0, space);
+  }
+
+  public static String formatCell(Coordinates cell) {
+    return "" + (char) ('a' + cell.columnIndex) + (cell.rowIndex + 1);
+  }
+
+  public static Coordinates parseCell(String text) {
+    if (text.length() != 2) throw new IllegalArgumentException("bad cell: " + text);
+    int c = text.charAt(0) - 'a';
+    int r = text.charAt(1) - '1';
+    if (!State.isInBounds(r, c)) throw new IllegalArgumentException("bad cell: " + text);
+    return new Coordinates(r, c);
+  }
+
+  public static String formatMove(Action action) {
+    return formatCell(action.destinationCell) + formatCell(action.tokenToRemove);
+  }
+
+  public static Action parseMove(String text) {
+    if (text.length() != 4) throw new IllegalArgumentException("bad move: " + text);
+    return new Action(parseCell(text.substring(0, 2)), parseCell(text.substring(2)));
+  }
+
+  /**
+   * Formats a "position cells ..." command describing the given state.
+   * @param state
+   * @return
+   */
+  public static String formatPosition(State state) {
+    StringBuilder sb = new StringBuilder("position cells ");
+    for (int r = 0; r < State.ROW_COUNT; r++) {
+      for (int c = 0; c < State.COLUMN_COUNT; c++) sb.append(state.isCellAvailable(r, c) ? '1' : '0');
+    }
+    sb.append(' ').append(formatCell(state.playerOnePosition()))
+            .append(' ').append(formatCell(state.playerTwoPosition()))
+            .append(' ').append(state.currentPlayer());
+    return sb.toString();
+  }
+
+  /**
+   * Parses the arguments of a "position" command.
+   * @param line the whole command line
+   * @return the described state
+   * @throws IllegalArgumentException if the command is malformed or plays an illegal move
+   */
+  public static State parsePosition(String line) {
+    String[] tokens = line.trim().split("\\s+");
+    if (tokens.length < 2) throw new IllegalArgumentException("position needs startpos or cells");
+    if (tokens[1].equals("cells")) {
+      if (tokens.length != 6) throw new IllegalArgumentException("position cells needs 4 fields");
+      String flags = tokens[2];
+      if (flags.length() != State.ROW_COUNT * State.COLUMN_COUNT) throw new IllegalArgumentException("expected 48 cell flags");
+      boolean[][] cells = new boolean[State.ROW_COUNT][State.COLUMN_COUNT];
+      for (int i = 0; i < flags.length(); i++) cells[i / State.COLUMN_COUNT][i % State.COLUMN_COUNT] = flags.charAt(i) == '1';
+      int toMove = Integer.parseInt(tokens[5]);
+      if (toMove != 1 && toMove != 2) throw new IllegalArgumentException("side to move must be 1 or 2");
+      Coordinates one = parseCell(tokens[3]), two = parseCell(tokens[4]);
+      if (!cells[one.rowIndex][one.columnIndex] || !cells[two.rowIndex][two.columnIndex]) {
+        throw new IllegalArgumentException("pawns must stand on available cells");
+      }
+      if (one.cellIndex() == two.cellIndex()) throw new IllegalArgumentException("pawns must stand on different cells");
+      return new State(cells, one, two, toMove);
+    }
+    if (!tokens[1].equals("startpos")) throw new IllegalArgumentException("unknown position type: " + tokens[1]);
+
+    int i = 2;
+    int first = 1;
+    if (i + 1 < tokens.length && tokens[i].equals("first")) {
+      first = Integer.parseInt(tokens[i + 1]);
+      if (first != 1 && first != 2) throw new IllegalArgumentException("first must be 1 or 2");
+      i += 2;
+    }
+    State state = State.initial(first);
+    if (i < tokens.length) {
+      if (!tokens[i].equals("moves")) throw new IllegalArgumentException("unexpected token: " + tokens[i]);
+      for (i++; i < tokens.length; i++) {
+        Action move = parseMove(tokens[i]);
+        if (!state.isLegalAction(move)) throw new IllegalArgumentException("illegal move: " + tokens[i]);
+        state = state.apply(move);
+      }
+    }
+    return state;
+  }
+}
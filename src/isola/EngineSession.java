@@ -0,0 +1,62 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+/**
+ * The state of one engine-protocol conversation: the agent answering it and the current position.
+ * Not thread-safe; {@link EngineHost} drives it from its reading thread, {@link MatchServer} from
+ * the connection's selector thread with searches run on a worker pool.
+ */
+final class EngineSession {
+  private final Agent agent;
+  private State position = State.initial(1);
+
+  EngineSession(Agent agent) {
+    this.agent = agent;
+  }
+
+  State position() { return position; }
+
+  /**
+   * Handles every command except "go" and "quit", which need the caller's threading.
+   * @param line the command line
+   * @return the reply lines, or an empty string if the command has no reply
+   */
+  String handle(String line) {
+    String command = EngineProtocol.command(line);
+    try {
+      switch (command) {
+        case "":
+          return "";
+        case "isola":
+          return "id name " + agent.name() + "\nisolaok\n";
+        case "isready":
+          return "readyok\n";
+        case "newgame":
+          position = State.initial(1);
+          return "";
+        case "position":
+          position = EngineProtocol.parsePosition(line);
+          return "";
+        default:
+          return "error unknown command: " + command + "\n";
+      }
+    } catch (IllegalArgumentException e) {
+      return "error " + e.getMessage() + "\n";
+    }
+  }
+
+  /**
+   * Runs the agent on a position and formats its reply.
+   * @param agent the agent to search with
+   * @param state the position to search
+   * @return the "bestmove" reply line
+   */
+  static String search(Agent agent, State state) {
+    if (state.winnerIfTerminal() != 0) return "bestmove none\n";
+    return "bestmove " + EngineProtocol.formatMove(agent.choose(state)) + "\n";
+  }
+
+  Agent agent() { return agent; }
+}
@@ -3,6 +3,19 @@
  */
 package isola;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
 public class ExperimentRunner {
 
   /**
@@ -17,67 +30,241 @@ public class ExperimentRunner {
     int games = 0;
   }
 
+  /**
+   * The outcome of a single game.
+   */
+  private static class Game {
+    int firstPlayer;
+    int winner;
+    int p1Moves = 0;
+    int p2Moves = 0;
+    final List<Action> played = new ArrayList<>();
+  }
+
   /**
    * Main method to run experiments.
-   * @param args
+   * @param args optional: a game-record file to append every played game to,
+   *             --watch &lt;boards&gt; to play that many games at once in a spectator window, and/or
+   *             --topk &lt;k&gt; to also measure how often each agent's move is among the k best of a deeper search
    */
-  public static void main(String[] args) {
-    Heuristic h1 = new HeuristicOne();
-    Heuristic h2 = new HeuristicTwo();
+  public static void main(String[] args) throws IOException {
+    String recordPath = null;
+    SpectatorPanel spectator = null;
+    int topK = 0;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--watch") && i + 1 < args.length) {
+        spectator = SpectatorPanel.open(Integer.parseInt(args[++i]), "Isolation experiments");
+      } else if (args[i].equals("--topk") && i + 1 < args.length) {
+        topK = Integer.parseInt(args[++i]);
+      } else {
+        recordPath = args[i];
+      }
+    }
+
+    // Agents keep per-search state, so every thread playing a series gets its own.
+    Supplier<Agent> H1Agent = () -> new MinMaxAgent(new HeuristicOne(), 3, true);
+    Supplier<Agent> H2Agent = () -> new MinMaxAgent(new HeuristicTwo(), 3, true);
+    Supplier<Agent> H3Agent = () -> new MinMaxAgent(new HeuristicThree(), 3, true);
+
+    GameRecordWriter recorder = (recordPath != null) ? new GameRecordWriter(Paths.get(recordPath)) : null;
+    try {
+      Random seeds = new Random();
 
-    Agent H1Agent = new MinMaxAgent(h1, 3, true);
-    Agent H2Agent = new MinMaxAgent(h2, 3, true);
+      Result r1 = runGames("H1 vs H1", H1Agent, H1Agent, 50, seeds, recorder, spectator);
+      printSeriesSummary("H1 vs H1", r1);
 
-    Result r1 = runGames("H1 vs H1", H1Agent, H1Agent, 50);
-    printSeriesSummary("H1 vs H1", r1);
+      Result r2 = runGames("H2 vs H2", H2Agent, H2Agent, 50, seeds, recorder, spectator);
+      printSeriesSummary("H2 vs H2", r2);
 
-    Result r2 = runGames("H2 vs H2", H2Agent, H2Agent, 50);
-    printSeriesSummary("H2 vs H2", r2);
+      Result r3a = runGames("H1(P1) vs H2(P2)", H1Agent, H2Agent, 50, seeds, recorder, spectator);
+      Result r3b = runGames("H2(P1) vs H1(P2)", H2Agent, H1Agent, 50, seeds, recorder, spectator);
+      Result r3 = combine(r3a, r3b);
+      printSeriesSummary("H1 vs H2 (combined 100, alternating first)", r3);
 
-    Result r3a = runGames("H1(P1) vs H2(P2)", H1Agent, H2Agent, 50);
-    Result r3b = runGames("H2(P1) vs H1(P2)", H2Agent, H1Agent, 50);
-    Result r3 = combine(r3a, r3b);
-    printSeriesSummary("H1 vs H2 (combined 100, alternating first)", r3);
+      Result r4a = runGames("H3(P1) vs H1(P2)", H3Agent, H1Agent, 50, seeds, recorder, spectator);
+      Result r4b = runGames("H1(P1) vs H3(P2)", H1Agent, H3Agent, 50, seeds, recorder, spectator);
+      printSeriesSummary("H3 vs H1 (combined 100, alternating first, H3 wins: "
+              + (r4a.winsPlayer1 + r4b.winsPlayer2) + ")", combine(r4a, r4b));
+
+      Result r5a = runGames("H3(P1) vs H2(P2)", H3Agent, H2Agent, 50, seeds, recorder, spectator);
+      Result r5b = runGames("H2(P1) vs H3(P2)", H2Agent, H3Agent, 50, seeds, recorder, spectator);
+      printSeriesSummary("H3 vs H2 (combined 100, alternating first, H3 wins: "
+              + (r5a.winsPlayer1 + r5b.winsPlayer2) + ")", combine(r5a, r5b));
+
+      if (topK > 0) {
+        measureTopK(new String[] {"H1", "H2", "H3"}, new Agent[] {H1Agent.get(), H2Agent.get(), H3Agent.get()},
+                topK, 30, seeds);
+      }
+    } finally {
+      if (recorder != null) recorder.close();
+      if (spectator != null) spectator.close();
+    }
   }
 
   /**
    * Run a series of games between two agents.
    * @param seriesLabel
-   * @param agent1
-   * @param agent2
+   * @param agent1 creates the agent playing as player 1, once per thread that plays the series
+   * @param agent2 creates the agent playing as player 2, once per thread that plays the series
    * @param nGames
+   * @param seeds source of the per-game seeds
+   * @param recorder where to record each game, or null to not record
+   * @param spectator if not null, play one game per board at a time and show them live
    * @return
    */
-  private static Result runGames(String seriesLabel, Agent agent1, Agent agent2, int nGames) {
+  private static Result runGames(String seriesLabel, Supplier<Agent> agent1, Supplier<Agent> agent2, int nGames,
+                                 Random seeds, GameRecordWriter recorder, SpectatorPanel spectator) throws IOException {
     Result res = new Result();
-    for (int g = 0; g < nGames; g++) {
-      State state = State.initial(true); // randomize who actually moves first on the board
-      int total = 0, p1Moves = 0, p2Moves = 0;
-
-      while (state.winnerIfTerminal() == 0) {
-        int toMove = state.currentPlayer();                   // who moves now?
-        Agent current = (toMove == 1) ? agent1 : agent2;
-        Action act = current.choose(state);
-        state = state.apply(act);
-
-        if (toMove == 1) p1Moves++; else p2Moves++;
-        total++;
+    long[] gameSeeds = new long[nGames];
+    for (int g = 0; g < nGames; g++) gameSeeds[g] = seeds.nextLong();
+
+    if (spectator == null) {
+      Agent first = agent1.get(), second = agent2.get();
+      for (int g = 0; g < nGames; g++) {
+        Game game = playGame(first, second, gameSeeds[g], null, 0);
+        recordGame(seriesLabel, g, first, second, gameSeeds[g], game, res, recorder);
+      }
+      return res;
+    }
+
+    int boards = spectator.boardCount();
+    BlockingQueue<Integer> freeBoards = new ArrayBlockingQueue<>(boards);
+    for (int b = 0; b < boards; b++) freeBoards.add(b);
+    ExecutorService pool = Executors.newFixedThreadPool(boards);
+    ThreadLocal<Agent> firsts = ThreadLocal.withInitial(agent1);
+    ThreadLocal<Agent> seconds = ThreadLocal.withInitial(agent2);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int g = 0; g < nGames; g++) {
+        final int gameIndex = g;
+        futures.add(pool.submit(() -> {
+          int board = freeBoards.take();
+          try {
+            Agent first = firsts.get(), second = seconds.get();
+            Game game = playGame(first, second, gameSeeds[gameIndex], spectator, board);
+            synchronized (res) {
+              recordGame(seriesLabel, gameIndex, first, second, gameSeeds[gameIndex], game, res, recorder);
+            }
+          } finally {
+            freeBoards.add(board);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> f : futures) f.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+    return res;
+  }
+
+  /**
+   * Measure how often each agent's move is among the k best moves of a deeper reference search
+   * (territory heuristic, depth 5, at most 5 s per position) on positions from random playouts.
+   * A move counts if the reference scores it at least as high as its k-th best move, so every move
+   * tied with the k-th counts. Positions where the reference does not finish even its first
+   * iteration in time are skipped.
+   * @param labels
+   * @param agents
+   * @param k
+   * @param positions number of positions to test
+   * @param seeds
+   */
+  private static void measureTopK(String[] labels, Agent[] agents, int k, int positions, Random seeds) {
+    MinMaxAgent reference = new MinMaxAgent(new HeuristicThree(), 5, false);
+    reference.setTimeLimit(5000);
+    int[] hits = new int[agents.length];
+    int tested = 0, skipped = 0;
+    while (tested < positions) {
+      Random playout = new Random(seeds.nextLong());
+      State state = State.initial(playout);
+      int plies = 10 + playout.nextInt(20);
+      for (int p = 0; p < plies && state.winnerIfTerminal() == 0; p++) {
+        List<Action> actions = state.legalActions();
+        state = state.apply(actions.get(playout.nextInt(actions.size())));
+      }
+      if (state.winnerIfTerminal() != 0) continue;
+
+      // The k best lines plus every line tied with the k-th: exactly the moves scoring at least the k-th score.
+      List<AnalysisLine> best = reference.analyze(state, k, true);
+      if (best.isEmpty()) {
+        skipped++;
+        continue;
       }
+      int kthScore = best.get(Math.min(k, best.size()) - 1).score;
+      tested++;
+      for (int a = 0; a < agents.length; a++) {
+        Action choice = agents[a].choose(state);
+        for (AnalysisLine line : best) {
+          if (line.move.destinationCell.cellIndex() == choice.destinationCell.cellIndex()
+                  && line.move.tokenToRemove.cellIndex() == choice.tokenToRemove.cellIndex()) {
+            if (line.score >= kthScore) hits[a]++;
+            break;
+          }
+        }
+      }
+    }
+
+    System.out.println("----------------------------------------------------------------");
+    System.out.printf("Agreement with the top %d moves of %s over %d positions:%n", k, reference.name(), tested);
+    if (skipped > 0) System.out.printf("(%d positions skipped: the reference search did not finish an iteration in time)%n", skipped);
+    for (int a = 0; a < agents.length; a++) {
+      System.out.printf("%s (%s) → in top %d: %d/%d (%.1f%%)%n",
+              labels[a], agents[a].name(), k, hits[a], tested, 100.0 * hits[a] / tested);
+    }
+    System.out.println("----------------------------------------------------------------");
+  }
 
-      int winner = state.winnerIfTerminal();
-      if (winner == 1) res.winsPlayer1++; else if (winner == 2) res.winsPlayer2++;
+  /**
+   * Play one game, publishing every position to the spectator board if there is one.
+   */
+  private static Game playGame(Agent agent1, Agent agent2, long seed, SpectatorPanel spectator, int board) {
+    Game game = new Game();
+    State state = State.initial(new Random(seed)); // randomize who actually moves first on the board
+    game.firstPlayer = state.currentPlayer();
+    if (spectator != null) spectator.publish(board, state);
 
-      res.totalMoves  += total;
-      res.totalMovesP1 += p1Moves;
-      res.totalMovesP2 += p2Moves;
-      res.games++;
+    while (state.winnerIfTerminal() == 0) {
+      int toMove = state.currentPlayer();                   // who moves now?
+      Agent current = (toMove == 1) ? agent1 : agent2;
+      Action act = current.choose(state);
+      state = state.apply(act);
+      game.played.add(act);
+      if (spectator != null) spectator.publish(board, state);
 
-      System.out.printf(
-              "%s — Game %02d | Winner: P%d (%s vs %s) | P1 moves: %d, P2 moves: %d, Total: %d%n",
-              seriesLabel, g + 1, winner, agent1.name(), agent2.name(), p1Moves, p2Moves, total
-      );
+      if (toMove == 1) game.p1Moves++; else game.p2Moves++;
     }
-    return res;
+    game.winner = state.winnerIfTerminal();
+    return game;
+  }
+
+  /**
+   * Add a finished game to the series result, record it and print its line.
+   */
+  private static void recordGame(String seriesLabel, int g, Agent agent1, Agent agent2, long seed, Game game,
+                                 Result res, GameRecordWriter recorder) throws IOException {
+    int total = game.played.size();
+    if (game.winner == 1) res.winsPlayer1++; else if (game.winner == 2) res.winsPlayer2++;
+
+    res.totalMoves  += total;
+    res.totalMovesP1 += game.p1Moves;
+    res.totalMovesP2 += game.p2Moves;
+    res.games++;
+
+    if (recorder != null) {
+      recorder.append(new GameRecord(agent1.name(), agent2.name(), seed, game.firstPlayer, game.played));
+    }
+
+    System.out.printf(
+            "%s — Game %02d | Winner: P%d (%s vs %s) | P1 moves: %d, P2 moves: %d, Total: %d%n",
+            seriesLabel, g + 1, game.winner, agent1.name(), agent2.name(), game.p1Moves, game.p2Moves, total
+    );
   }
 
   /**
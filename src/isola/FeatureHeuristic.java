@@ -0,0 +1,28 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+
+package isola;
+
+/**
+ * A heuristic that scores an action only from its {@link Features}. Evaluating it extracts the
+ * features in its {@link #featureMask()} into a per-thread buffer and passes them to
+ * {@link #score(int[])}.
+ */
+public interface FeatureHeuristic extends Heuristic {
+  int score(int[] features);
+
+  /**
+   * Returns the features {@link #score(int[])} reads, as a mask of {@link Features#bit(int)} bits.
+   * Evaluation skips the features that are not in the mask; they are left as 0.
+   * @return
+   */
+  default int featureMask() {
+    return Features.ALL;
+  }
+
+  @Override
+  default int evaluate(State state, Action action, int player) {
+    return score(Features.extract(state, action, player, featureMask(), Features.threadBuffer()));
+  }
+}
@@ -0,0 +1,157 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+/**
+ * The position features the heuristics are built from, computed together in one pass.
+ *
+ * {@link #extract} writes the features of a (state, action) pair into an int array indexed by
+ * the constants below, working on the cell masks of the state without building the next state.
+ * Given a feature mask it skips the tight-cell count and the territory flood fill when no feature
+ * in the mask needs them.
+ * Heuristics then only combine numbers from the array, so scoring a move with several heuristics
+ * (tuning, analysis, ensembles) costs one extraction instead of one board walk per heuristic.
+ */
+public final class Features {
+  /** Cells the player can move to before the action. */
+  public static final int MY_MOVES_BEFORE = 0;
+  /** Cells the player can move to after the action. */
+  public static final int MY_MOVES_AFTER = 1;
+  /** Cells the opponent can move to before the action. */
+  public static final int OPPONENT_MOVES_BEFORE = 2;
+  /** Cells the opponent can move to after the action. */
+  public static final int OPPONENT_MOVES_AFTER = 3;
+  /** Available cells after the action with at least three removed neighbours. */
+  public static final int TIGHT_CELLS = 4;
+  /** 1 if after the action the pawns can no longer reach each other, otherwise 0. */
+  public static final int SEPARATED = 5;
+  /** Open cells the player reaches first, or the size of the player's region when separated. */
+  public static final int MY_TERRITORY = 6;
+  /** Open cells the opponent reaches first, or the size of the opponent's region when separated. */
+  public static final int OPPONENT_TERRITORY = 7;
+  /** Number of features. */
+  public static final int COUNT = 8;
+  /** Mask with every feature's bit set, see {@link FeatureHeuristic#featureMask()}. */
+  public static final int ALL = (1 << COUNT) - 1;
+
+  // The features that need the territory flood fill
+  private static final int TERRITORY_FEATURES = 1 << SEPARATED | 1 << MY_TERRITORY | 1 << OPPONENT_TERRITORY;
+
+  private static final ThreadLocal<int[]> BUFFER = ThreadLocal.withInitial(() -> new int[COUNT]);
+
+  private Features() {}
+
+  /**
+   * Returns this thread's scratch buffer for {@link #extract}. Its contents are overwritten by the
+   * next extraction on the same thread.
+   * @return
+   */
+  static int[] threadBuffer() {
+    return BUFFER.get();
+  }
+
+  /**
+   * Computes all features of the action taken in the state, seen from the given player.
+   * @param state the position before the action
+   * @param action an action of the player to move
+   * @param player the player the features are measured for
+   * @param out array of at least {@link #COUNT} entries to write into
+   * @return {@code out}
+   */
+  public static int[] extract(State state, Action action, int player, int[] out) {
+    return extract(state, action, player, ALL, out);
+  }
+
+  /**
+   * Computes the features in the mask of the action taken in the state, seen from the given
+   * player. The tight cells and the territory flood fill are skipped unless one of their features
+   * is asked for; skipped features are written as 0.
+   * @param state the position before the action
+   * @param action an action of the player to move
+   * @param player the player the features are measured for
+   * @param mask the features to compute, as {@link #bit(int)} bits
+   * @param out array of at least {@link #COUNT} entries to write into
+   * @return {@code out}
+   */
+  public static int[] extract(State state, Action action, int player, int mask, int[] out) {
+    long available = state.availableMask();
+    long p1 = 1L << state.playerOnePosition().cellIndex();
+    long p2 = 1L << state.playerTwoPosition().cellIndex();
+    long myPawn = (player == 1) ? p1 : p2;
+    long opponentPawn = (player == 1) ? p2 : p1;
+    long open = available & ~p1 & ~p2;
+    out[MY_MOVES_BEFORE] = Long.bitCount(Bitboards.expand(myPawn) & open);
+    out[OPPONENT_MOVES_BEFORE] = Long.bitCount(Bitboards.expand(opponentPawn) & open);
+
+    long destination = 1L << action.destinationCell.cellIndex();
+    if (state.currentPlayer() == player) myPawn = destination; else opponentPawn = destination;
+    available &= ~(1L << action.tokenToRemove.cellIndex());
+    open = available & ~myPawn & ~opponentPawn;
+    out[MY_MOVES_AFTER] = Long.bitCount(Bitboards.expand(myPawn) & open);
+    out[OPPONENT_MOVES_AFTER] = Long.bitCount(Bitboards.expand(opponentPawn) & open);
+
+    out[TIGHT_CELLS] = (mask & bit(TIGHT_CELLS)) == 0
+            ? 0 : Long.bitCount(available & Bitboards.withThreeNeighborsIn(Bitboards.BOARD & ~available));
+
+    int territory = (mask & TERRITORY_FEATURES) == 0 ? 0 : territory(myPawn, opponentPawn, open);
+    out[SEPARATED] = territory >>> 16;
+    out[MY_TERRITORY] = (territory >>> 8) & 0xFF;
+    out[OPPONENT_TERRITORY] = territory & 0xFF;
+    return out;
+  }
+
+  /**
+   * Computes the territory features, packed as separated &lt;&lt; 16 | mine &lt;&lt; 8 | theirs.
+   * @param myPawn the player's pawn
+   * @param opponentPawn the opponent's pawn
+   * @param open the cells that are available and not occupied
+   * @return
+   */
+  static int territory(long myPawn, long opponentPawn, long open) {
+    long myRegion = Bitboards.floodFill(myPawn, open);
+    if ((Bitboards.expand(myRegion | myPawn) & opponentPawn) == 0) {
+      return 1 << 16 | Long.bitCount(myRegion) << 8 | Long.bitCount(Bitboards.floodFill(opponentPawn, open));
+    }
+
+    long mine = 0, theirs = 0;
+    long myFrontier = myPawn, theirFrontier = opponentPawn;
+    while (myFrontier != 0 || theirFrontier != 0) {
+      long myNext = Bitboards.expand(myFrontier) & open;
+      long theirNext = Bitboards.expand(theirFrontier) & open;
+      // Cells both pawns reach at the same step are claimed by neither but stop both floods.
+      long contested = myNext & theirNext;
+      myFrontier = myNext & ~contested;
+      theirFrontier = theirNext & ~contested;
+      open &= ~(myNext | theirNext);
+      mine |= myFrontier;
+      theirs |= theirFrontier;
+    }
+    return Long.bitCount(mine) << 8 | Long.bitCount(theirs);
+  }
+
+  /**
+   * Returns the mask bit of a feature.
+   * @param feature a feature index
+   * @return
+   */
+  public static int bit(int feature) {
+    return 1 << feature;
+  }
+
+  /**
+   * Scores one action with several heuristics from a single extraction.
+   * @param state the position before the action
+   * @param action an action of the player to move
+   * @param player the player to score for
+   * @param heuristics the heuristics to apply
+   * @param scores receives one score per heuristic
+   */
+  public static void evaluateAll(State state, Action action, int player,
+                                 FeatureHeuristic[] heuristics, int[] scores) {
+    int mask = 0;
+    for (FeatureHeuristic heuristic : heuristics) mask |= heuristic.featureMask();
+    int[] features = extract(state, action, player, mask, threadBuffer());
+    for (int i = 0; i < heuristics.length; i++) scores[i] = heuristics[i].score(features);
+  }
+}
@@ -0,0 +1,135 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A recorded game of Isola: who played, the seed the game was started from, who moved first,
+ * and the sequence of moves. Each move is packed into two bytes (destination cell index,
+ * removed cell index), so a whole game fits in well under a hundred bytes.
+ *
+ * The seed only picked the first player; the agents draw from their own generators, so it does
+ * not reproduce the game. The recorded moves do.
+ */
+public final class GameRecord {
+  private final String playerOneName;
+  private final String playerTwoName;
+  private final long seed;
+  private final int firstPlayer;
+  private final byte[] packedMoves;
+
+  /**
+   * Creates a record from already packed moves.
+   * @param playerOneName name of the agent playing as player 1
+   * @param playerTwoName name of the agent playing as player 2
+   * @param seed the seed the game was started from
+   * @param firstPlayer the player who moved first (1 or 2)
+   * @param packedMoves two bytes per move, see {@link #packMove(Action, byte[], int)}
+   */
+  public GameRecord(String playerOneName, String playerTwoName, long seed, int firstPlayer, byte[] packedMoves) {
+    if (firstPlayer != 1 && firstPlayer != 2) throw new IllegalArgumentException("firstPlayer must be 1 or 2: " + firstPlayer);
+    if ((packedMoves.length & 1) != 0) throw new IllegalArgumentException("packed moves must have an even length");
+    this.playerOneName = playerOneName;
+    this.playerTwoName = playerTwoName;
+    this.seed = seed;
+    this.firstPlayer = firstPlayer;
+    this.packedMoves = packedMoves;
+  }
+
+  /**
+   * Creates a record from a list of played actions.
+   * @param playerOneName name of the agent playing as player 1
+   * @param playerTwoName name of the agent playing as player 2
+   * @param seed the seed the game was started from
+   * @param firstPlayer the player who moved first (1 or 2)
+   * @param moves the actions in the order they were played
+   */
+  public GameRecord(String playerOneName, String playerTwoName, long seed, int firstPlayer, List<Action> moves) {
+    this(playerOneName, playerTwoName, seed, firstPlayer, packMoves(moves));
+  }
+
+  public String playerOneName() { return playerOneName; }
+  public String playerTwoName() { return playerTwoName; }
+  public long seed() { return seed; }
+  public int firstPlayer() { return firstPlayer; }
+  public int moveCount() { return packedMoves.length / 2; }
+
+  /**
+   * Returns the packed move bytes. The array is shared, callers must not modify it.
+   * @return
+   */
+  byte[] packedMoves() { return packedMoves; }
+
+  /**
+   * Returns the action played at the given ply (0-based).
+   * @param ply
+   * @return
+   */
+  public Action move(int ply) {
+    return new Action(Coordinates.ofCellIndex(packedMoves[2 * ply]),
+            Coordinates.ofCellIndex(packedMoves[2 * ply + 1]));
+  }
+
+  /**
+   * Returns all recorded actions in order.
+   * @return
+   */
+  public List<Action> moves() {
+    ArrayList<Action> result = new ArrayList<>(moveCount());
+    for (int i = 0; i < moveCount(); i++) result.add(move(i));
+    return result;
+  }
+
+  /**
+   * Returns the position the game started from.
+   * @return
+   */
+  public State initialState() {
+    return State.initial(firstPlayer);
+  }
+
+  /**
+   * Replays the first {@code ply} moves and returns the resulting position.
+   * @param ply number of moves to apply, between 0 and {@link #moveCount()}
+   * @return
+   */
+  public State stateAfter(int ply) {
+    if (ply < 0 || ply > moveCount()) throw new IndexOutOfBoundsException("ply " + ply + " of " + moveCount());
+    State state = initialState();
+    for (int i = 0; i < ply; i++) state = state.apply(move(i));
+    return state;
+  }
+
+  /**
+   * Replays the whole game and returns the winner, or 0 if the record ends before the game was over.
+   * @return
+   */
+  public int winner() {
+    return stateAfter(moveCount()).winnerIfTerminal();
+  }
+
+  /**
+   * Packs an action into two bytes at the given offset.
+   * @param action the action to pack
+   * @param target the destination array
+   * @param offset where to write the two bytes
+   */
+  public static void packMove(Action action, byte[] target, int offset) {
+    target[offset] = (byte) action.destinationCell.cellIndex();
+    target[offset + 1] = (byte) action.tokenToRemove.cellIndex();
+  }
+
+  private static byte[] packMoves(List<Action> moves) {
+    byte[] packed = new byte[moves.size() * 2];
+    for (int i = 0; i < moves.size(); i++) packMove(moves.get(i), packed, 2 * i);
+    return packed;
+  }
+
+  @Override public String toString() {
+    return playerOneName + " vs " + playerTwoName + " (seed " + seed + ", P" + firstPlayer
+            + " first, " + moveCount() + " moves)";
+  }
+}
@@ -0,0 +1,252 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a file written by {@link GameRecordWriter}. Games are decoded one at a time, so files
+ * with millions of games can be iterated without holding them in memory. Random access by game
+ * number builds an offset index on first use (one long per game).
+ *
+ * A record cut short at the end of the file (for example by a crash mid-write) is treated as
+ * the end of the data. A length prefix that no record can have is reported as an IOException.
+ */
+public class GameRecordReader implements Closeable, Iterable<GameRecord> {
+  private static final int DEFAULT_BUFFER_BYTES = 1 << 16;
+
+  private final Path path;
+  private final FileChannel channel;
+  private long[] offsets = null;
+  private int count = 0;
+
+  /**
+   * Opens a game-record file for reading.
+   * @param path the game-record file
+   * @throws IOException if the file cannot be opened or is not a game-record file
+   */
+  public GameRecordReader(Path path) throws IOException {
+    this.path = path;
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      checkFileHeader(channel, path);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the number of complete games in the file.
+   * @return
+   * @throws IOException if reading fails
+   */
+  public int size() throws IOException {
+    ensureIndex();
+    return count;
+  }
+
+  /**
+   * Reads the game with the given number (0-based) without touching the games around it.
+   * @param index the game number
+   * @return the decoded game
+   * @throws IOException if reading fails
+   */
+  public GameRecord get(int index) throws IOException {
+    ensureIndex();
+    if (index < 0 || index >= count) throw new IndexOutOfBoundsException("game " + index + " of " + count);
+    long offset = offsets[index];
+    ByteBuffer length = ByteBuffer.allocate(4);
+    readFully(length, offset);
+    length.flip();
+    ByteBuffer body = ByteBuffer.allocate(length.getInt());
+    readFully(body, offset + 4);
+    body.flip();
+    return decode(body);
+  }
+
+  /**
+   * Iterates the games in file order, streaming through a fixed-size buffer.
+   * @return
+   */
+  @Override
+  public Iterator<GameRecord> iterator() {
+    return new Iterator<GameRecord>() {
+      private ByteBuffer buffer = ByteBuffer.allocateDirect(DEFAULT_BUFFER_BYTES).limit(0);
+      private long filePosition = GameRecordWriter.FILE_HEADER_BYTES;
+      private GameRecord next = null;
+
+      @Override public boolean hasNext() {
+        if (next == null) next = readNext();
+        return next != null;
+      }
+
+      @Override public GameRecord next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        GameRecord result = next;
+        next = null;
+        return result;
+      }
+
+      private GameRecord readNext() {
+        try {
+          if (!fill(4)) return null;
+          long offset = filePosition - buffer.remaining();
+          int bodyLength = checkBodyLength(buffer.getInt(buffer.position()), offset, path);
+          if (!fill(4 + bodyLength)) return null;
+          buffer.position(buffer.position() + 4);
+          ByteBuffer body = buffer.slice();
+          body.limit(bodyLength);
+          buffer.position(buffer.position() + bodyLength);
+          return decode(body);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      /** Makes sure at least {@code bytes} bytes are buffered; false at end of file. */
+      private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return true;
+        if (bytes > buffer.capacity()) {
+          ByteBuffer bigger = ByteBuffer.allocateDirect(bytes);
+          bigger.put(buffer).flip();
+          buffer = bigger;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+          int read = channel.read(buffer, filePosition);
+          if (read < 0) break;
+          filePosition += read;
+        }
+        buffer.flip();
+        return buffer.remaining() >= bytes;
+      }
+    };
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Scans the record length prefixes once and remembers where each game starts.
+   */
+  private void ensureIndex() throws IOException {
+    if (offsets != null) return;
+    Index index = scan(channel, path);
+    offsets = index.offsets;
+    count = index.count;
+  }
+
+  /**
+   * Where the records of a file start, and where the last complete one ends.
+   */
+  static final class Index {
+    long[] offsets = new long[1024];
+    int count = 0;
+    long end = GameRecordWriter.FILE_HEADER_BYTES;
+  }
+
+  /**
+   * Walks the record length prefixes of a game-record file. A record whose length is plausible but
+   * runs past the end of the file is a cut-short last record and ends the scan.
+   * @throws IOException if reading fails or a length prefix cannot belong to any record
+   */
+  static Index scan(FileChannel channel, Path path) throws IOException {
+    Index index = new Index();
+    long size = channel.size();
+    long position = GameRecordWriter.FILE_HEADER_BYTES;
+    ByteBuffer buffer = ByteBuffer.allocateDirect(DEFAULT_BUFFER_BYTES);
+    long bufferStart = position;
+    buffer.limit(0);
+    while (position + 4 <= size) {
+      int inBuffer = (int) (position - bufferStart);
+      if (inBuffer < 0 || inBuffer + 4 > buffer.limit()) {
+        buffer.clear();
+        bufferStart = position;
+        while (buffer.hasRemaining() && channel.read(buffer, bufferStart + buffer.position()) >= 0) { }
+        buffer.flip();
+        inBuffer = 0;
+      }
+      long next = position + 4 + checkBodyLength(buffer.getInt(inBuffer), position, path);
+      if (next > size) break;
+      if (index.count == index.offsets.length) index.offsets = Arrays.copyOf(index.offsets, index.count * 2);
+      index.offsets[index.count++] = position;
+      position = next;
+    }
+    index.end = position;
+    return index;
+  }
+
+  /**
+   * Rejects a record length no record can have, which means the file is corrupt rather than cut short.
+   * @return the length
+   */
+  private static int checkBodyLength(int bodyLength, long offset, Path path) throws IOException {
+    if (bodyLength < GameRecordWriter.MIN_BODY_BYTES || bodyLength > GameRecordWriter.MAX_BODY_BYTES) {
+      throw new IOException(path + ": corrupt record length " + bodyLength + " at offset " + offset);
+    }
+    return bodyLength;
+  }
+
+  private void readFully(ByteBuffer target, long position) throws IOException {
+    while (target.hasRemaining()) {
+      int read = channel.read(target, position);
+      if (read < 0) throw new IOException("unexpected end of " + path);
+      position += read;
+    }
+  }
+
+  private static GameRecord decode(ByteBuffer body) {
+    long seed = body.getLong();
+    int firstPlayer = body.get();
+    String name1 = readName(body);
+    String name2 = readName(body);
+    int moveCount = Short.toUnsignedInt(body.getShort());
+    byte[] moves = new byte[moveCount * 2];
+    body.get(moves);
+    return new GameRecord(name1, name2, seed, firstPlayer, moves);
+  }
+
+  private static String readName(ByteBuffer body) {
+    byte[] bytes = new byte[Short.toUnsignedInt(body.getShort())];
+    body.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Verifies the magic number and version at the start of an existing game-record file. A file
+   * shorter than the header whose bytes start a valid header was cut short while being created
+   * and holds no games.
+   * @return false if the file is shorter than the header, true if the header is complete
+   * @throws IOException if reading fails or the file is not a game-record file
+   */
+  static boolean checkFileHeader(FileChannel channel, Path path) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(GameRecordWriter.FILE_HEADER_BYTES);
+    while (header.hasRemaining() && channel.read(header, header.position()) >= 0) { }
+    header.flip();
+    ByteBuffer expected = GameRecordWriter.putFileHeader(ByteBuffer.allocate(GameRecordWriter.FILE_HEADER_BYTES));
+    expected.flip();
+    if (header.remaining() < GameRecordWriter.FILE_HEADER_BYTES) {
+      expected.limit(header.remaining());
+      if (!header.equals(expected)) throw new IOException(path + " is not a game-record file");
+      return false;
+    }
+    if (header.getInt() != GameRecordWriter.MAGIC) throw new IOException(path + " is not a game-record file");
+    byte version = header.get();
+    if (version != GameRecordWriter.VERSION) throw new IOException(path + " has unsupported game-record version " + version);
+    return true;
+  }
+}
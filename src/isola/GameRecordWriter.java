@@ -0,0 +1,144 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends {@link GameRecord}s to a game-record file through a buffered NIO channel.
+ *
+ * File layout: an 8 byte header (magic "ISLR", a format version byte, three reserved bytes)
+ * followed by records. Each record is an int body length and then the body:
+ * seed (long), first player (byte), both agent names (unsigned short length + UTF-8 bytes)
+ * and the move count (unsigned short) followed by two bytes per move.
+ */
+public class GameRecordWriter implements Closeable {
+  static final int MAGIC = 0x49534C52; // "ISLR"
+  static final byte VERSION = 1;
+  static final int FILE_HEADER_BYTES = 8;
+  /** Body length of a game with empty names and no moves. */
+  static final int MIN_BODY_BYTES = 8 + 1 + 2 + 2 + 2;
+  /** Body length of a game with the longest names and the most moves. */
+  static final int MAX_BODY_BYTES = MIN_BODY_BYTES + 2 * 0xFFFF + 2 * 0xFFFF;
+
+  private static final int DEFAULT_BUFFER_BYTES = 1 << 16;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private long recordsWritten = 0;
+
+  /**
+   * Opens the file for appending, creating it (and writing the file header) if needed. A record cut
+   * short at the end of an existing file (by a crash mid-write) is truncated away first, so new
+   * records follow the last complete one; a file cut short inside its header is started over.
+   * @param path the game-record file
+   * @throws IOException if the file cannot be opened or is not a game-record file
+   */
+  public GameRecordWriter(Path path) throws IOException {
+    this(path, DEFAULT_BUFFER_BYTES);
+  }
+
+  /**
+   * Opens the file for appending with the given buffer size.
+   * @param path the game-record file
+   * @param bufferBytes size of the direct write buffer
+   * @throws IOException if the file cannot be opened or is not a game-record file
+   */
+  public GameRecordWriter(Path path, int bufferBytes) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    this.buffer = ByteBuffer.allocateDirect(Math.max(bufferBytes, 1024));
+    try {
+      if (!GameRecordReader.checkFileHeader(channel, path)) {
+        // New, or cut short while its header was written: start over with a complete header
+        channel.truncate(0);
+        putFileHeader(buffer);
+      } else {
+        long end = GameRecordReader.scan(channel, path).end;
+        if (end < channel.size()) channel.truncate(end);
+      }
+      channel.position(channel.size());
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Writes the file header into the buffer.
+   * @param target the buffer, with room for {@link #FILE_HEADER_BYTES} bytes
+   * @return {@code target}
+   */
+  static ByteBuffer putFileHeader(ByteBuffer target) {
+    return target.putInt(MAGIC).put(VERSION).put((byte) 0).putShort((short) 0);
+  }
+
+  /**
+   * Appends one game to the file. The data reaches the file when the buffer fills up,
+   * or on {@link #flush()} / {@link #close()}.
+   * @param record the game to append
+   * @throws IOException if writing fails
+   */
+  public void append(GameRecord record) throws IOException {
+    byte[] name1 = record.playerOneName().getBytes(StandardCharsets.UTF_8);
+    byte[] name2 = record.playerTwoName().getBytes(StandardCharsets.UTF_8);
+    byte[] moves = record.packedMoves();
+    if (name1.length > 0xFFFF || name2.length > 0xFFFF) throw new IllegalArgumentException("agent name too long");
+    if (record.moveCount() > 0xFFFF) throw new IllegalArgumentException("too many moves: " + record.moveCount());
+
+    int bodyLength = 8 + 1 + 2 + name1.length + 2 + name2.length + 2 + moves.length;
+    int recordLength = 4 + bodyLength;
+    ByteBuffer target = buffer;
+    if (recordLength > buffer.remaining()) {
+      flush();
+      // Records bigger than the whole buffer (absurdly long names) go out on their own.
+      if (recordLength > buffer.capacity()) target = ByteBuffer.allocate(recordLength);
+    }
+    target.putInt(bodyLength)
+            .putLong(record.seed())
+            .put((byte) record.firstPlayer())
+            .putShort((short) name1.length).put(name1)
+            .putShort((short) name2.length).put(name2)
+            .putShort((short) record.moveCount()).put(moves);
+    if (target != buffer) {
+      target.flip();
+      while (target.hasRemaining()) channel.write(target);
+    }
+    recordsWritten++;
+  }
+
+  /**
+   * Returns the number of games appended through this writer.
+   * @return
+   */
+  public long recordsWritten() { return recordsWritten; }
+
+  /**
+   * Writes any buffered records to the file.
+   * @throws IOException if writing fails
+   */
+  public void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) channel.write(buffer);
+    buffer.clear();
+  }
+
+  /**
+   * Flushes buffered records and closes the file.
+   * @throws IOException if writing fails
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+}
@@ -6,4 +6,13 @@ package isola;
 
 public interface Heuristic {
   int evaluate(State state, Action action, int player);
+
+  /**
+   * Whether the heuristic scores a position the same as its reflections and colour swap, so search
+   * tables may share entries between them (see {@link CanonicalPosition}).
+   * @return
+   */
+  default boolean isSymmetric() {
+    return true;
+  }
 }
@@ -7,57 +7,36 @@ package isola;
  * A heuristic that evaluates actions based on the number of legal moves available
  * before and after the action, as well as the impact on the opponent's legal moves.
  */
-public class HeuristicOne implements Heuristic {
+public class HeuristicOne implements FeatureHeuristic {
+  private static final int MOBILITY_WEIGHT = 1;
+  private static final int ISOLATION_SCORE = 100;
+  private static final int RESTRICTION_SCORE = 2;
 
   /**
-   * Evaluate the given action in the context of the current state for the specified player.
-   * @param currentState
-   * @param action
-   * @param player
+   * Score an action from its features: +1/0/-1 as the player's mobility rises, holds or falls,
+   * plus a bonus for isolating or restricting the opponent.
+   * @param f the features of the action, indexed like {@link Features}
    * @return
    */
   @Override
-  public int evaluate(State currentState, Action action, int player) {
-    State nextState = currentState.apply(action);
-
-    Coordinates currentPos = (player == 1)
-            ? currentState.playerOnePosition()
-            : currentState.playerTwoPosition();
-
-    Coordinates nextPos = (player == 1)
-            ? nextState.playerOnePosition()
-            : nextState.playerTwoPosition();
-
-    Coordinates opponentPos = (player == 1)
-            ? nextState.playerTwoPosition()
-            : nextState.playerOnePosition();
-
-    int movesBefore = currentState.legalDestinationsFrom(currentPos).size();
-    int movesAfter = nextState.legalDestinationsFrom(nextPos).size();
-
-    int H_move;
-    if (movesAfter > movesBefore) {
-      H_move = +1;
-    } else if (movesAfter == movesBefore) {
-      H_move = 0;
-    } else {
-      H_move = -1;
-    }
-
-    int opponentMoves = nextState.legalDestinationsFrom(opponentPos).size();
+  public int score(int[] f) {
+    int H_move = MOBILITY_WEIGHT * Integer.signum(f[Features.MY_MOVES_AFTER] - f[Features.MY_MOVES_BEFORE]);
 
     int H_token;
-    if (opponentMoves == 0) {
-      H_token = +100;
+    if (f[Features.OPPONENT_MOVES_AFTER] == 0) {
+      H_token = ISOLATION_SCORE;
+    } else if (f[Features.OPPONENT_MOVES_AFTER] < f[Features.OPPONENT_MOVES_BEFORE]) {
+      H_token = RESTRICTION_SCORE;
     } else {
-      int opponentMovesBefore = currentState.legalDestinationsFrom(opponentPos).size();
-      if (opponentMoves < opponentMovesBefore) {
-        H_token = +2;
-      } else {
-        H_token = 0;
-      }
+      H_token = 0;
     }
 
     return H_move + H_token;
   }
+
+  @Override
+  public int featureMask() {
+    return Features.bit(Features.MY_MOVES_BEFORE) | Features.bit(Features.MY_MOVES_AFTER)
+            | Features.bit(Features.OPPONENT_MOVES_BEFORE) | Features.bit(Features.OPPONENT_MOVES_AFTER);
+  }
 }
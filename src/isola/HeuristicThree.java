@@ -0,0 +1,39 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+/**
+ * HeuristicThree evaluates territory: after the action, both pawns flood the open cells one ring
+ * per step at the same time, and each cell belongs to whichever pawn reaches it first (cells
+ * reached at the same step belong to nobody). If the two floods never meet, the players are in
+ * separate regions and the larger region wins, so that difference is weighted heavily.
+ */
+public class HeuristicThree implements FeatureHeuristic {
+  private static final int SEPARATED_WEIGHT = 10;
+  // Above any separated score (the regions differ by fewer than the 48 cells of the board), so
+  // trapping the opponent now is always preferred over walling off a larger region
+  private static final int ISOLATION_SCORE = SEPARATED_WEIGHT * State.ROW_COUNT * State.COLUMN_COUNT + 20;
+  private static final int TERRITORY_WEIGHT = 2;
+  private static final int MOBILITY_WEIGHT = 1;
+
+  /**
+   * Score an action from its territory and mobility features.
+   * @param f the features of the action, indexed like {@link Features}
+   * @return
+   */
+  @Override
+  public int score(int[] f) {
+    if (f[Features.OPPONENT_MOVES_AFTER] == 0) return ISOLATION_SCORE;
+    int territory = f[Features.MY_TERRITORY] - f[Features.OPPONENT_TERRITORY];
+    if (f[Features.SEPARATED] != 0) return SEPARATED_WEIGHT * territory;
+    return TERRITORY_WEIGHT * territory
+            + MOBILITY_WEIGHT * (f[Features.MY_MOVES_AFTER] - f[Features.OPPONENT_MOVES_AFTER]);
+  }
+
+  @Override
+  public int featureMask() {
+    return Features.bit(Features.MY_MOVES_AFTER) | Features.bit(Features.OPPONENT_MOVES_AFTER)
+            | Features.bit(Features.SEPARATED) | Features.bit(Features.MY_TERRITORY) | Features.bit(Features.OPPONENT_TERRITORY);
+  }
+}
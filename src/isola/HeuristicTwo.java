@@ -7,62 +7,33 @@ package isola;
 /**
  * HeuristicTwo evaluates a game state based on two factors:
  */
-public class HeuristicTwo implements Heuristic {
+public class HeuristicTwo implements FeatureHeuristic {
+  private static final int ISOLATION_SCORE = 100;
+  private static final int TIGHT_CELL_WEIGHT = 1;
 
   /**
-   * H_move: The difference in the number of legal moves available to the player
-   * @param currentState
-   * @param action
-   * @param player
+   * H_move: The difference in the number of legal moves available to the player before and after
+   * the action. H_token: a fixed score for isolating the opponent, otherwise the number of tight cells.
+   * @param f the features of the action, indexed like {@link Features}
    * @return
    */
   @Override
-  public int evaluate(State currentState, Action action, int player) {
-    State nextState = currentState.apply(action);
+  public int score(int[] f) {
+    int H_move = f[Features.MY_MOVES_BEFORE] - f[Features.MY_MOVES_AFTER];
 
-    Coordinates currentPos = (player == 1)
-            ? currentState.playerOnePosition()
-            : currentState.playerTwoPosition();
-
-    Coordinates nextPos = (player == 1)
-            ? nextState.playerOnePosition()
-            : nextState.playerTwoPosition();
-
-    Coordinates opponentPos = (player == 1)
-            ? nextState.playerTwoPosition()
-            : nextState.playerOnePosition();
-
-    int movesBefore = currentState.legalDestinationsFrom(currentPos).size();
-    int movesAfter  = nextState.legalDestinationsFrom(nextPos).size();
-    int H_move = movesBefore - movesAfter;
-
-    int opponentMoves = nextState.legalDestinationsFrom(opponentPos).size();
     int H_token;
-
-    if (opponentMoves == 0) {
-      H_token = 100;
+    if (f[Features.OPPONENT_MOVES_AFTER] == 0) {
+      H_token = ISOLATION_SCORE;
     } else {
-      H_token = countTightCells(nextState);
+      H_token = TIGHT_CELL_WEIGHT * f[Features.TIGHT_CELLS];
     }
 
     return H_move + H_token;
   }
 
-  private int countTightCells(State state) {
-    int count = 0;
-    for (int r = 0; r < State.ROW_COUNT; r++) {
-      for (int c = 0; c < State.COLUMN_COUNT; c++) {
-        if (!state.isCellAvailable(r, c)) continue;
-        int blocked = 0;
-        for (Coordinates nbr : state.neighborsOf(new Coordinates(r, c))) {
-          if (!state.isCellAvailable(nbr.rowIndex, nbr.columnIndex)) {
-            blocked++;
-          }
-        }
-        if (blocked >= 3) count++;
-      }
-    }
-    return count;
+  @Override
+  public int featureMask() {
+    return Features.bit(Features.MY_MOVES_BEFORE) | Features.bit(Features.MY_MOVES_AFTER)
+            | Features.bit(Features.OPPONENT_MOVES_AFTER) | Features.bit(Features.TIGHT_CELLS);
   }
 }
-
@@ -0,0 +1,33 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+/**
+ * A heuristic that keeps state for the search's current line and updates it as moves are made and
+ * unmade, instead of rebuilding it from the whole board at every leaf.
+ *
+ * {@link MinMaxAgent} calls {@link #startSearch(State)} with the root, then wraps the search of
+ * every child in {@link #makeMove(State, Action, State)} and {@link #unmakeMove()}. The state is
+ * kept per thread, so one instance can serve searches on several threads.
+ */
+public interface IncrementalHeuristic extends Heuristic {
+  /**
+   * Resets the line to the root of a new search.
+   * @param root the position searched from
+   */
+  void startSearch(State root);
+
+  /**
+   * Extends the line by one move.
+   * @param parent the position at the end of the line
+   * @param action the move made
+   * @param child the position after the move
+   */
+  void makeMove(State parent, Action action, State child);
+
+  /**
+   * Takes back the last move of the line.
+   */
+  void unmakeMove();
+}
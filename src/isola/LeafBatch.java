@@ -0,0 +1,161 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.util.Arrays;
+
+/**
+ * All actions of one leaf position, evaluated together for a {@link FeatureHeuristic}.
+ *
+ * {@link #fill(State)} lays the actions out as a struct of arrays: one array holding the mover's
+ * pawn after each action and one holding the available cells after it, built straight from the
+ * leaf's cell masks without creating {@link Action} objects. {@link #bestScore(FeatureHeuristic)}
+ * then computes each feature the heuristic reads as one column for the whole batch (simple loops
+ * over primitive arrays that the JIT can unroll and vectorize), skips the features it does not
+ * read, and scores the rows. The per-action columns come from a {@link LeafKernel}: the Vector API
+ * kernel when it is available, the loops in {@link #scalarColumns} otherwise. Buffers grow as
+ * needed and are reused, so a batch belongs to one search thread.
+ *
+ * A batch holds one leaf, not all the leaves below a node: the search takes the children of a node
+ * one at a time so that a beta cutoff can skip the rest, and one leaf already has a few hundred
+ * actions, far more rows than a vector register has lanes.
+ */
+final class LeafBatch {
+  private static final LeafKernel KERNEL = LeafKernel.load();
+
+  private int size = 0;
+  private long[] moverPawns = new long[256];
+  private long[] availables = new long[256];
+  private final int[][] columns = new int[Features.COUNT][256];
+  private final int[] row = new int[Features.COUNT];
+
+  // The features the last heuristic read, rebuilt only when the feature mask changes
+  private int usedMask = -1;
+  private int usedCount = 0;
+  private final int[] used = new int[Features.COUNT];
+
+  // Shared by every action of the leaf
+  private long opponentPawn;
+  private int moverMovesBefore;
+  private int opponentMovesBefore;
+
+  /**
+   * Loads every legal action of the position, seen from the player to move.
+   * @param leaf a position that is not over
+   */
+  void fill(State leaf) {
+    int mover = leaf.currentPlayer();
+    long moverPawn = 1L << ((mover == 1) ? leaf.playerOnePosition() : leaf.playerTwoPosition()).cellIndex();
+    opponentPawn = 1L << ((mover == 1) ? leaf.playerTwoPosition() : leaf.playerOnePosition()).cellIndex();
+    long available = leaf.availableMask();
+    long open = available & ~moverPawn & ~opponentPawn;
+    moverMovesBefore = Long.bitCount(Bitboards.expand(moverPawn) & open);
+    opponentMovesBefore = Long.bitCount(Bitboards.expand(opponentPawn) & open);
+
+    size = 0;
+    for (long d = leaf.destinationMask(mover); d != 0; d &= d - 1) {
+      int destination = Long.numberOfTrailingZeros(d);
+      long removable = leaf.removableMaskAfterMoveTo(Coordinates.ofCellIndex(destination));
+      ensureCapacity(size + Long.bitCount(removable));
+      for (long m = removable; m != 0; m &= m - 1) {
+        moverPawns[size] = 1L << destination;
+        availables[size] = available & ~(m & -m);
+        size++;
+      }
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the highest score the heuristic gives any action in the batch.
+   * @param heuristic the heuristic, scoring for the player to move
+   * @return
+   */
+  int bestScore(FeatureHeuristic heuristic) {
+    int mask = heuristic.featureMask();
+    computeColumns(mask);
+    if (mask != usedMask) {
+      usedCount = 0;
+      for (int f = 0; f < Features.COUNT; f++) if ((mask & Features.bit(f)) != 0) used[usedCount++] = f;
+      usedMask = mask;
+    }
+
+    Arrays.fill(row, 0);
+    int best = Integer.MIN_VALUE;
+    for (int i = 0; i < size; i++) {
+      for (int u = 0; u < usedCount; u++) row[used[u]] = columns[used[u]][i];
+      int score = heuristic.score(row);
+      if (score > best) best = score;
+    }
+    return best;
+  }
+
+  private void computeColumns(int mask) {
+    if ((mask & Features.bit(Features.MY_MOVES_BEFORE)) != 0) {
+      Arrays.fill(columns[Features.MY_MOVES_BEFORE], 0, size, moverMovesBefore);
+    }
+    if ((mask & Features.bit(Features.OPPONENT_MOVES_BEFORE)) != 0) {
+      Arrays.fill(columns[Features.OPPONENT_MOVES_BEFORE], 0, size, opponentMovesBefore);
+    }
+    KERNEL.computeColumns(mask, opponentPawn, moverPawns, availables, 0, size, columns);
+  }
+
+  /**
+   * The scalar {@link LeafKernel}: one loop per feature over the rows.
+   * @param mask the features to compute
+   * @param opponentPawn the opponent's pawn, shared by every action
+   * @param moverPawns the mover's pawn after each action
+   * @param availables the available cells after each action
+   * @param from the first row
+   * @param to one past the last row
+   * @param columns one column per feature, receiving the values
+   */
+  static void scalarColumns(int mask, long opponentPawn, long[] moverPawns, long[] availables,
+                            int from, int to, int[][] columns) {
+    if ((mask & Features.bit(Features.MY_MOVES_AFTER)) != 0) {
+      int[] out = columns[Features.MY_MOVES_AFTER];
+      for (int i = from; i < to; i++) {
+        out[i] = Long.bitCount(Bitboards.expand(moverPawns[i]) & availables[i] & ~moverPawns[i] & ~opponentPawn);
+      }
+    }
+    if ((mask & Features.bit(Features.OPPONENT_MOVES_AFTER)) != 0) {
+      // The opponent's pawn is the same for every action, so its neighbourhood is computed once.
+      long opponentNeighbors = Bitboards.expand(opponentPawn) & ~opponentPawn;
+      int[] out = columns[Features.OPPONENT_MOVES_AFTER];
+      for (int i = from; i < to; i++) {
+        out[i] = Long.bitCount(opponentNeighbors & availables[i] & ~moverPawns[i]);
+      }
+    }
+    if ((mask & Features.bit(Features.TIGHT_CELLS)) != 0) {
+      int[] out = columns[Features.TIGHT_CELLS];
+      for (int i = from; i < to; i++) {
+        out[i] = Long.bitCount(availables[i] & Bitboards.withThreeNeighborsIn(Bitboards.BOARD & ~availables[i]));
+      }
+    }
+    int territoryMask = Features.bit(Features.SEPARATED) | Features.bit(Features.MY_TERRITORY)
+            | Features.bit(Features.OPPONENT_TERRITORY);
+    if ((mask & territoryMask) != 0) {
+      int[] separated = columns[Features.SEPARATED];
+      int[] mine = columns[Features.MY_TERRITORY];
+      int[] theirs = columns[Features.OPPONENT_TERRITORY];
+      for (int i = from; i < to; i++) {
+        int territory = Features.territory(moverPawns[i], opponentPawn, availables[i] & ~moverPawns[i] & ~opponentPawn);
+        separated[i] = territory >>> 16;
+        mine[i] = (territory >>> 8) & 0xFF;
+        theirs[i] = territory & 0xFF;
+      }
+    }
+  }
+
+  private void ensureCapacity(int needed) {
+    if (needed <= moverPawns.length) return;
+    int capacity = Math.max(needed, moverPawns.length * 2);
+    moverPawns = Arrays.copyOf(moverPawns, capacity);
+    availables = Arrays.copyOf(availables, capacity);
+    for (int f = 0; f < Features.COUNT; f++) columns[f] = Arrays.copyOf(columns[f], capacity);
+  }
+}
@@ -0,0 +1,47 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+/**
+ * Computes the per-action feature columns of a {@link LeafBatch}.
+ *
+ * The plain loops in {@link LeafBatch#scalarColumns} are always available. When the JVM runs with
+ * {@code --add-modules jdk.incubator.vector} and {@code VectorLeafKernel} (built from
+ * {@code src-vector}) is on the class path, {@link #load()} returns that kernel instead, which
+ * computes several actions per instruction with the Vector API.
+ */
+interface LeafKernel {
+  String VECTOR_MODULE = "jdk.incubator.vector";
+  String VECTOR_KERNEL = "isola.VectorLeafKernel";
+
+  /**
+   * Fills the columns of rows {@code from} to {@code to} for every per-action feature in the mask
+   * (the moves-after, tight-cell and territory features; the moves-before columns are the same
+   * for every action and are filled by the batch).
+   * @param mask the features to compute
+   * @param opponentPawn the opponent's pawn, shared by every action
+   * @param moverPawns the mover's pawn after each action
+   * @param availables the available cells after each action
+   * @param from the first row
+   * @param to one past the last row
+   * @param columns one column per feature, receiving the values
+   */
+  void computeColumns(int mask, long opponentPawn, long[] moverPawns, long[] availables,
+                      int from, int to, int[][] columns);
+
+  /**
+   * Returns the Vector API kernel if the module and the class are present, else the scalar loops.
+   * @return
+   */
+  static LeafKernel load() {
+    if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+      try {
+        return (LeafKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException | LinkageError e) {
+        // Not built, or built for another JDK's incubator API: use the scalar loops.
+      }
+    }
+    return LeafBatch::scalarColumns;
+  }
+}
@@ -0,0 +1,36 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.util.Arrays;
+
+/**
+ * A heuristic that is a plain weighted sum of the {@link Features}, for tuning experiments.
+ */
+public class LinearHeuristic implements FeatureHeuristic {
+  private final int[] weights;
+
+  /**
+   * Creates a weighted-sum heuristic.
+   * @param weights one weight per feature, indexed like {@link Features}
+   */
+  public LinearHeuristic(int... weights) {
+    if (weights.length != Features.COUNT) {
+      throw new IllegalArgumentException("expected " + Features.COUNT + " weights, got " + weights.length);
+    }
+    this.weights = weights.clone();
+  }
+
+  @Override
+  public int score(int[] features) {
+    int sum = 0;
+    for (int i = 0; i < Features.COUNT; i++) sum += weights[i] * features[i];
+    return sum;
+  }
+
+  @Override
+  public String toString() {
+    return "LinearHeuristic" + Arrays.toString(weights);
+  }
+}
@@ -0,0 +1,366 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking server that speaks the {@link EngineProtocol} to many clients at once, each
+ * connection being one game against its own instance of the served agent.
+ *
+ * Connections are spread over a few selector threads that only parse lines and move bytes.
+ * "go" commands are handed to a bounded search pool; the result comes back to the connection's
+ * selector thread, which keeps all per-connection state single-threaded. Commands arriving during
+ * a search are held and handled, in order, once it finishes. When the pool's queue is full the
+ * client gets "error busy" instead of the server blocking.
+ */
+public class MatchServer implements Closeable {
+  private static final int MAX_LINE_BYTES = 4096;
+  private static final long MAX_ACCEPT_BACKOFF_MILLIS = 1_000;
+
+  private final ServerSocketChannel serverChannel;
+  private final Supplier<Agent> agents;
+  private final ThreadPoolExecutor searchPool;
+  private final EventLoop[] loops;
+  private final AtomicInteger openConnections = new AtomicInteger();
+  private volatile boolean running = true;
+
+  /**
+   * Binds the server socket and starts the selector and search threads.
+   * @param address where to listen
+   * @param agents creates the agent for each new connection
+   * @param selectorThreads number of selector threads
+   * @param searchThreads number of threads running searches
+   * @param searchQueue number of searches that may wait for a search thread
+   * @throws IOException if the socket cannot be bound
+   */
+  public MatchServer(InetSocketAddress address, Supplier<Agent> agents,
+                     int selectorThreads, int searchThreads, int searchQueue) throws IOException {
+    this.agents = agents;
+    this.searchPool = new ThreadPoolExecutor(searchThreads, searchThreads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(searchQueue));
+    this.serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(address, 1024);
+
+    loops = new EventLoop[Math.max(1, selectorThreads)];
+    for (int i = 0; i < loops.length; i++) {
+      loops[i] = new EventLoop();
+      Thread t = new Thread(loops[i], "match-selector-" + i);
+      t.setDaemon(true);
+      t.start();
+    }
+    Thread acceptor = new Thread(this::acceptLoop, "match-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * Returns the port the server listens on.
+   * @return
+   */
+  public int port() {
+    return serverChannel.socket().getLocalPort();
+  }
+
+  /**
+   * Returns the number of connected clients.
+   * @return
+   */
+  public int openConnections() {
+    return openConnections.get();
+  }
+
+  @Override
+  public void close() throws IOException {
+    running = false;
+    serverChannel.close();
+    for (EventLoop loop : loops) loop.selector.wakeup();
+    searchPool.shutdownNow();
+  }
+
+  /**
+   * Accepts connections and deals them out to the event loops. Failing accepts (for example when
+   * the process is out of file descriptors) are retried after a delay that doubles up to a second;
+   * a closed server socket ends the loop.
+   */
+  private void acceptLoop() {
+    int next = 0;
+    long backoff = 0;
+    while (running) {
+      SocketChannel channel = null;
+      try {
+        channel = serverChannel.accept();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        EventLoop loop = loops[next++ % loops.length];
+        loop.incoming.add(channel);
+        loop.selector.wakeup();
+        backoff = 0;
+      } catch (ClosedChannelException e) {
+        return;
+      } catch (IOException e) {
+        if (!running) return;
+        if (channel != null) closeQuietly(channel);
+        backoff = Math.min(Math.max(2 * backoff, 10), MAX_ACCEPT_BACKOFF_MILLIS);
+        System.err.println("accept failed: " + e.getMessage() + "; retrying in " + backoff + " ms");
+        try {
+          Thread.sleep(backoff);
+        } catch (InterruptedException interrupted) {
+          return;
+        }
+      }
+    }
+  }
+
+  private static void closeQuietly(SocketChannel channel) {
+    try { channel.close(); } catch (IOException ignored) { }
+  }
+
+  /**
+   * One selector thread and the connections registered with it.
+   */
+  private final class EventLoop implements Runnable {
+    final Selector selector;
+    final Queue<SocketChannel> incoming = new ConcurrentLinkedQueue<>();
+    final Queue<Runnable> completions = new ConcurrentLinkedQueue<>();
+
+    EventLoop() throws IOException {
+      selector = Selector.open();
+    }
+
+    /**
+     * Runs the loop. A failure while serving one connection (an agent that cannot be created, a
+     * cancelled key, a bug in a command handler) closes that connection only; only a failing
+     * selector stops the loop.
+     */
+    @Override public void run() {
+      try {
+        while (running) {
+          selector.select();
+          SocketChannel channel;
+          while ((channel = incoming.poll()) != null) {
+            try {
+              Connection connection = new Connection(this, channel, new EngineSession(agents.get()));
+              connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+              openConnections.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+              System.err.println("could not set up connection: " + e);
+              closeQuietly(channel);
+            }
+          }
+          Runnable completion;
+          while ((completion = completions.poll()) != null) {
+            try {
+              completion.run();
+            } catch (RuntimeException e) {
+              System.err.println("search completion failed: " + e);
+            }
+          }
+
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Connection connection = (Connection) key.attachment();
+            try {
+              if (key.isValid() && key.isReadable()) connection.onReadable();
+              if (key.isValid() && key.isWritable()) connection.onWritable();
+            } catch (IOException e) {
+              connection.close();
+            } catch (RuntimeException e) {
+              System.err.println("connection failed: " + e);
+              connection.close();
+            }
+          }
+        }
+      } catch (IOException e) {
+        System.err.println("selector failed: " + e.getMessage());
+      } finally {
+        for (SelectionKey key : selector.keys()) ((Connection) key.attachment()).close();
+        try { selector.close(); } catch (IOException ignored) { }
+      }
+    }
+  }
+
+  /**
+   * Per-connection state; only touched from its event loop's thread.
+   */
+  private final class Connection {
+    final EventLoop loop;
+    final SocketChannel channel;
+    final EngineSession session;
+    final ByteBuffer input = ByteBuffer.allocate(MAX_LINE_BYTES);
+    final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+    final ArrayDeque<String> held = new ArrayDeque<>();
+    SelectionKey key;
+    boolean searching = false;
+    boolean closing = false;
+    boolean closed = false;
+
+    Connection(EventLoop loop, SocketChannel channel, EngineSession session) {
+      this.loop = loop;
+      this.channel = channel;
+      this.session = session;
+    }
+
+    void onReadable() throws IOException {
+      if (channel.read(input) < 0) {
+        close();
+        return;
+      }
+      input.flip();
+      int start = 0;
+      for (int i = 0; i < input.limit(); i++) {
+        if (input.get(i) != '\n') continue;
+        byte[] bytes = new byte[i - start];
+        input.position(start);
+        input.get(bytes);
+        start = i + 1;
+        handleLine(new String(bytes, StandardCharsets.UTF_8).replace("\r", ""));
+        if (closed) return;
+      }
+      input.position(start);
+      input.compact();
+      if (!input.hasRemaining()) {
+        send("error line too long\n");
+        closing = true;
+        input.clear();
+      }
+    }
+
+    void handleLine(String line) throws IOException {
+      if (closing) return;
+      if (searching) {
+        held.add(line);
+        return;
+      }
+      String command = EngineProtocol.command(line);
+      if (command.equals("quit")) {
+        closing = true;
+        if (output.isEmpty()) close();
+      } else if (command.equals("go")) {
+        startSearch();
+      } else {
+        send(session.handle(line));
+      }
+    }
+
+    void startSearch() throws IOException {
+      State position = session.position();
+      Agent agent = session.agent();
+      searching = true;
+      try {
+        searchPool.execute(() -> {
+          String reply;
+          try {
+            reply = EngineSession.search(agent, position);
+          } catch (RuntimeException e) {
+            reply = "error search failed: " + e + "\n";
+          }
+          String result = reply;
+          loop.completions.add(() -> finishSearch(result));
+          loop.selector.wakeup();
+        });
+      } catch (RejectedExecutionException e) {
+        searching = false;
+        send("error busy\n");
+      }
+    }
+
+    void finishSearch(String reply) {
+      if (closed) return;
+      try {
+        searching = false;
+        send(reply);
+        while (!searching && !closed && !held.isEmpty()) handleLine(held.poll());
+      } catch (IOException e) {
+        close();
+      } catch (RuntimeException e) {
+        System.err.println("connection failed: " + e);
+        close();
+      }
+    }
+
+    void send(String text) throws IOException {
+      if (text.isEmpty()) return;
+      output.add(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+      onWritable();
+    }
+
+    void onWritable() throws IOException {
+      while (!output.isEmpty()) {
+        ByteBuffer head = output.peek();
+        channel.write(head);
+        if (head.hasRemaining()) break;
+        output.poll();
+      }
+      if (output.isEmpty()) {
+        if (closing && !searching) {
+          close();
+          return;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+      } else {
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+      }
+    }
+
+    void close() {
+      if (closed) return;
+      closed = true;
+      openConnections.decrementAndGet();
+      if (key != null) key.cancel();
+      try { channel.close(); } catch (IOException ignored) { }
+    }
+  }
+
+  /**
+   * Runs a match server from the command line.
+   * @param args port, agent name (see {@link AgentFactory#byName(String)}), then optionally selector and search thread counts
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 2) {
+      System.err.println("usage: MatchServer <port> <agent> [selectorThreads] [searchThreads]");
+      System.exit(2);
+    }
+    int port = Integer.parseInt(args[0]);
+    String spec = args[1];
+    AgentFactory.byName(spec); // fail fast on a bad agent name
+    int selectors = (args.length > 2) ? Integer.parseInt(args[2]) : 2;
+    int searchers = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+    MatchServer server = new MatchServer(new InetSocketAddress(port), () -> {
+      try {
+        return AgentFactory.byName(spec);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, selectors, searchers, 64 * searchers);
+    System.out.println("Serving " + spec + " on port " + server.port());
+    while (true) {
+      Thread.sleep(60_000);
+      System.out.println(server.openConnections() + " open connections");
+    }
+  }
+}
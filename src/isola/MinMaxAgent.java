@@ -4,20 +4,110 @@
 package isola;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Random;
 
 /**
  * An implementation of the Minimax algorithm with alpha-beta pruning for the game of Isola.
  * The agent uses a specified heuristic to evaluate non-terminal game states at a given search depth.
+ *
+ * Scores are integers. A game won at ply n from the root scores {@link #MATE_SCORE} - n and a
+ * game lost at ply n scores -({@link #MATE_SCORE} - n), so faster wins and slower losses rank
+ * higher; heuristic scores stay far below {@link #MATE_BOUND}.
+ *
+ * The search's speed-ups can be switched off one at a time with {@link #setSearchFeature}.
  */
 public class MinMaxAgent implements Agent {
+  /** Score of a win on the current ply; a win n plies ahead scores MATE_SCORE - n. */
+  public static final int MATE_SCORE = 1_000_000;
+  /** Scores at or above this are proven wins, at or below its negation proven losses. */
+  public static final int MATE_BOUND = MATE_SCORE - 1_000;
+  private static final int INFINITY = 2 * MATE_SCORE;
+  private static final int NO_SCORE = Integer.MIN_VALUE;
+  private static final int ANALYSIS_TABLE_BITS = 18;
 
   private final Heuristic heuristic;
+  private final IncrementalHeuristic incremental;
   private final int maximumSearchDepth;
-  private final boolean randomizeExpansionOrder;
-  private final Random random = new Random();
+  private final Random random;
+  private volatile EnumSet<SearchFeature> features;
+  private volatile int lastScore = 0;
+  private volatile SearchListener listener = null;
+  private volatile long reportIntervalNanos = 0;
+  private volatile long timeLimitNanos = 0;
+
+  /**
+   * Per-call search bookkeeping: depth limit, node count, principal variation, progress reporting
+   * and the transposition table if the search uses one. Kept out of the agent's fields so one
+   * agent can search on several threads at once.
+   */
+  private final class SearchContext {
+    final SearchListener listener;
+    int depthLimit = maximumSearchDepth;
+    final EnumSet<SearchFeature> features = MinMaxAgent.this.features;
+    boolean randomize = features.contains(SearchFeature.SHUFFLE);
+    final boolean mateDistancePruning = features.contains(SearchFeature.MATE_DISTANCE_PRUNING);
+    final IncrementalHeuristic incremental = features.contains(SearchFeature.INCREMENTAL) ? MinMaxAgent.this.incremental : null;
+    TranspositionTable table = null;
+    Action hashMove = null;
+    // The previous iteration's principal variation, and whether the current line still follows it
+    Action[] previousPv = new Action[0];
+    boolean followingPv = false;
+    LeafBatch leafBatch = null;
+    final long startNanos = System.nanoTime();
+    long nextReportNanos;
+    final long deadlineNanos;
+    boolean stopped = false;
+    long nodes = 0;
+    final Action[][] pv = new Action[maximumSearchDepth + 2][maximumSearchDepth + 1];
+    final int[] pvLength = new int[maximumSearchDepth + 2];
+    int rootMovesSearched = 0;
+    int rootMoveCount = 0;
+    int rootScore = -INFINITY;
+
+    SearchContext(SearchListener listener) {
+      this.listener = listener;
+      this.nextReportNanos = startNanos + reportIntervalNanos;
+      long limit = timeLimitNanos;
+      this.deadlineNanos = (limit > 0) ? startNanos + limit : 0;
+    }
+
+    /**
+     * Counts a node; every 1024 nodes checks the clock, stops the search once the time limit has
+     * passed and publishes a snapshot when one is due.
+     */
+    void countNode() {
+      if ((++nodes & 1023) != 0) return;
+      long now = System.nanoTime();
+      if (deadlineNanos != 0 && now - deadlineNanos >= 0) stopped = true;
+      if (listener != null && now - nextReportNanos >= 0) {
+        report(false);
+        nextReportNanos = now + reportIntervalNanos;
+      }
+    }
+
+    /**
+     * Makes {@code action} followed by the line found below it the principal variation at {@code depth}.
+     */
+    void updatePv(int depth, Action action) {
+      pv[depth][0] = action;
+      int childLength = pvLength[depth + 1];
+      System.arraycopy(pv[depth + 1], 0, pv[depth], 1, childLength);
+      pvLength[depth] = childLength + 1;
+    }
+
+    void report(boolean finished) {
+      List<Action> line = new ArrayList<>(pvLength[0]);
+      for (int i = 0; i < pvLength[0]; i++) line.add(pv[0][i]);
+      long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000L;
+      listener.onProgress(new SearchProgress(depthLimit, rootMovesSearched, rootMoveCount,
+              line.isEmpty() ? null : line.get(0), line, rootScore, nodes, elapsedMillis, finished));
+    }
+  }
 
   /**
    * Constructs a MinMaxAgent with the specified heuristic, search depth, and expansion order randomization.
@@ -25,9 +115,23 @@ public class MinMaxAgent implements Agent {
   public MinMaxAgent(Heuristic heuristic,
                       int maximumSearchDepth,
                       boolean randomizeExpansionOrder) {
+    this(heuristic, maximumSearchDepth, randomizeExpansionOrder, new Random());
+  }
+
+  /**
+   * Constructs a MinMaxAgent that draws its expansion order and tie-breaks from the given random source,
+   * so that games between seeded agents can be reproduced.
+   */
+  public MinMaxAgent(Heuristic heuristic,
+                      int maximumSearchDepth,
+                      boolean randomizeExpansionOrder,
+                      Random random) {
     this.heuristic = heuristic;
+    this.incremental = (heuristic instanceof IncrementalHeuristic) ? (IncrementalHeuristic) heuristic : null;
     this.maximumSearchDepth = Math.max(1, maximumSearchDepth);
-    this.randomizeExpansionOrder = randomizeExpansionOrder;
+    this.features = EnumSet.allOf(SearchFeature.class);
+    if (!randomizeExpansionOrder) features.remove(SearchFeature.SHUFFLE);
+    this.random = random;
   }
 
   /**
@@ -36,39 +140,288 @@ public class MinMaxAgent implements Agent {
    */
   @Override
   public String name() {
-    return "Minimax(d=" + maximumSearchDepth + ", " + heuristic.getClass().getSimpleName() + ")";
+    StringBuilder name = new StringBuilder("Minimax(d=").append(maximumSearchDepth)
+            .append(", ").append(heuristic.getClass().getSimpleName());
+    long limit = timeLimitNanos;
+    if (limit > 0) name.append(", ").append(limit / 1_000_000L).append("ms");
+    for (SearchFeature feature : EnumSet.complementOf(features)) name.append(", -").append(feature.specName);
+    return name.append(")").toString();
   }
 
   /**
    * Chooses the best action for the current player using the Minimax algorithm with alpha-beta pruning.
+   *
+   * The search deepens one ply at a time up to this agent's depth. Each iteration searches the
+   * previous iteration's best move first and tries its principal variation first below it. With a
+   * time limit, the move of the last finished iteration is played, unless the cut-short iteration
+   * already found a move with a higher exact score. Deepening stops early once the best move is a
+   * proven win or every move is a proven loss, since deeper search cannot change either.
    * @param currentState The current state of the game.
    * @return The chosen action.
    */
   @Override
   public Action choose(State currentState) {
     final int maximizingPlayer = currentState.currentPlayer();
-    double alpha = Double.NEGATIVE_INFINITY;
-    double beta  = Double.POSITIVE_INFINITY;
+    SearchContext ctx = new SearchContext(listener);
 
     List<Action> rootActions = new ArrayList<>(currentState.legalActions());
-    if (randomizeExpansionOrder) Collections.shuffle(rootActions, random);
+    if (ctx.randomize) Collections.shuffle(rootActions, random);
+    if (ctx.features.contains(SearchFeature.WINS_FIRST)) moveImmediateWinsFirst(currentState, rootActions);
+    ctx.rootMoveCount = rootActions.size();
+    int[] scores = new int[rootActions.size()];
 
-    double bestScore = Double.NEGATIVE_INFINITY;
-    Action bestAction = rootActions.get(0); // safe default
+    // The result of the last finished iteration; before the first one, the first move to try.
+    Action bestAction = rootActions.get(0);
+    int bestScore = -INFINITY;
 
-    for (Action candidate : rootActions) {
-      State next = currentState.apply(candidate);
-      double score = minimize(next, 1, alpha, beta, maximizingPlayer);
-      if (score > bestScore || (score == bestScore && random.nextBoolean())) {
-        bestScore = score;
-        bestAction = candidate;
+    if (ctx.incremental != null) ctx.incremental.startSearch(currentState);
+    for (int depth = 1; depth <= maximumSearchDepth; depth++) {
+      ctx.depthLimit = depth;
+      ctx.rootMovesSearched = 0;
+      int alpha = -INFINITY;
+      int beta = INFINITY;
+      int iterationScore = -INFINITY;
+      Action iterationAction = null;
+      int firstScore = -INFINITY;  // this iteration's score of the previous best move, searched first
+
+      for (int i = 0; i < rootActions.size(); i++) {
+        Action candidate = rootActions.get(i);
+        ctx.followingPv = (i == 0);
+        State next = makeMove(currentState, candidate, ctx);
+        // Search just below alpha so a move that ties the best score gets its exact score, not a
+        // cut-off bound that merely equals it, before it can win the random tie-break.
+        int score = minimize(next, 1, alpha - 1, beta, maximizingPlayer, ctx);
+        unmakeMove(ctx);
+        // A root move whose search was cut short has no reliable score.
+        if (ctx.stopped) break;
+        ctx.rootMovesSearched++;
+        scores[i] = score;
+        if (i == 0) firstScore = score;
+        if (score > iterationScore || (score == iterationScore && random.nextBoolean())) {
+          iterationScore = score;
+          iterationAction = candidate;
+          ctx.rootScore = score;
+          ctx.updatePv(0, candidate);
+        }
+        // Only a win on this very move cannot be beaten. After a longer proven win the other moves
+        // are still searched, but against it, so only a faster win can replace it (and mate-distance
+        // pruning cuts off every line that cannot end sooner).
+        if (iterationScore >= MATE_SCORE - 1) break;
+        alpha = Math.max(alpha, iterationScore);
       }
-      alpha = Math.max(alpha, bestScore);
-      if (alpha >= beta) break;
+
+      if (ctx.stopped) {
+        // Moves after the first were searched against its score, so beating it is an exact result
+        // at this depth; anything less leaves the last finished iteration's move in place.
+        if (iterationAction != null && (bestScore == -INFINITY || iterationScore > firstScore)) {
+          bestAction = iterationAction;
+          bestScore = iterationScore;
+        } else {
+          System.arraycopy(ctx.previousPv, 0, ctx.pv[0], 0, ctx.previousPv.length);
+          ctx.pvLength[0] = ctx.previousPv.length;
+        }
+        break;
+      }
+      bestAction = iterationAction;
+      bestScore = iterationScore;
+      if (bestScore >= MATE_BOUND || allProvenLost(scores)) break;
+
+      // The next iteration starts with this one's best move and follows its line.
+      ctx.previousPv = Arrays.copyOf(ctx.pv[0], ctx.pvLength[0]);
+      rootActions.remove(bestAction);
+      rootActions.add(0, bestAction);
     }
+    lastScore = bestScore;
+    ctx.rootScore = bestScore;
+    if (ctx.listener != null) ctx.report(true);
     return bestAction;
   }
 
+  /**
+   * Ranks the root moves: returns the k best with exact scores and principal variations, best first.
+   *
+   * The search deepens one ply at a time up to this agent's depth. Within an iteration, every root
+   * move is searched against the score of the current k-th best line, so only moves that enter the
+   * top k get exact scores and the rest are cut off early. All lines and iterations share one
+   * transposition table, whose stored moves are tried first, and each iteration orders the root
+   * moves by the previous iteration's scores. Expansion order is not randomized. Deepening stops
+   * early once the best move is a proven win or every move is a proven loss, since deeper search
+   * cannot change either. Respects the time limit, returning the last finished iteration, or no
+   * lines if not even the first one finished.
+   * @param state the position to analyse
+   * @param k the number of lines wanted
+   * @return up to k lines, best first; empty if the game is over or no iteration finished in time
+   */
+  public List<AnalysisLine> analyze(State state, int k) {
+    return analyze(state, k, false);
+  }
+
+  /**
+   * Like {@link #analyze(State, int)}, optionally also keeping every line that scores the same as
+   * the k-th, so the result holds exactly the moves scoring at least the k-th best score.
+   * @param state the position to analyse
+   * @param k the number of lines wanted
+   * @param includeTies whether to keep the lines that tie the k-th, beyond k
+   * @return the lines, best first; empty if the game is over or no iteration finished in time
+   */
+  public List<AnalysisLine> analyze(State state, int k, boolean includeTies) {
+    final int maximizingPlayer = state.currentPlayer();
+    SearchContext ctx = new SearchContext(listener);
+    ctx.table = new TranspositionTable(ANALYSIS_TABLE_BITS);
+    ctx.randomize = false;
+
+    List<Action> rootActions = new ArrayList<>(state.legalActions());
+    ctx.rootMoveCount = rootActions.size();
+    int[] scores = new int[rootActions.size()];
+    List<AnalysisLine> result = new ArrayList<>();
+
+    if (ctx.incremental != null) ctx.incremental.startSearch(state);
+    for (int depth = 1; depth <= maximumSearchDepth && !rootActions.isEmpty(); depth++) {
+      ctx.depthLimit = depth;
+      ctx.rootMovesSearched = 0;
+      ctx.rootScore = -INFINITY;
+      List<AnalysisLine> lines = new ArrayList<>();
+      for (int i = 0; i < rootActions.size(); i++) {
+        Action move = rootActions.get(i);
+        int kth = (lines.size() < k) ? -INFINITY : lines.get(k - 1).score;
+        // Searched just below the k-th score, so a move that ties it still gets its exact score.
+        int score = minimize(makeMove(state, move, ctx), 1, kth - 1, INFINITY, maximizingPlayer, ctx);
+        unmakeMove(ctx);
+        if (ctx.stopped) break;
+        ctx.rootMovesSearched++;
+        scores[i] = score;
+        if (lines.size() >= k && (score < kth || (score == kth && !includeTies))) continue;
+
+        List<Action> pv = new ArrayList<>();
+        pv.add(move);
+        for (int j = 0; j < ctx.pvLength[1]; j++) pv.add(ctx.pv[1][j]);
+        extendFromTable(pv, state, depth, ctx);
+        int rank = 0;
+        while (rank < lines.size() && lines.get(rank).score >= score) rank++;
+        lines.add(rank, new AnalysisLine(rank + 1, move, score, depth, pv));
+        while (lines.size() > k && (!includeTies || lines.get(lines.size() - 1).score < lines.get(k - 1).score)) {
+          lines.remove(lines.size() - 1);
+        }
+        if (rank == 0) {
+          ctx.rootScore = score;
+          ctx.updatePv(0, move);
+        }
+      }
+      // A cut-short iteration has not searched every move; keep the last finished one, if any.
+      if (ctx.stopped) break;
+      result = new ArrayList<>();
+      for (int r = 0; r < lines.size(); r++) {
+        AnalysisLine line = lines.get(r);
+        result.add(new AnalysisLine(r + 1, line.move, line.score, line.depth, line.principalVariation));
+      }
+      if (result.get(0).score >= MATE_BOUND || allProvenLost(scores)) break;
+
+      // Order the next iteration by this one's scores (exact for the top k, bounds for the rest).
+      Integer[] order = new Integer[rootActions.size()];
+      for (int i = 0; i < order.length; i++) order[i] = i;
+      Arrays.sort(order, Comparator.comparingInt(i -> -scores[i]));
+      List<Action> reordered = new ArrayList<>(order.length);
+      for (int i : order) reordered.add(rootActions.get(i));
+      rootActions = reordered;
+    }
+    if (ctx.listener != null) ctx.report(true);
+    return result;
+  }
+
+  /**
+   * Checks whether every root score is a proven loss. Scores of moves outside the top lines are
+   * upper bounds, which still prove a loss when they are that low.
+   */
+  private static boolean allProvenLost(int[] scores) {
+    for (int score : scores) if (score > -MATE_BOUND) return false;
+    return true;
+  }
+
+  /**
+   * Moves the actions that leave the opponent without a move to the front, keeping the order of
+   * the rest, so the root finds a win on the next ply before any longer one.
+   */
+  private static void moveImmediateWinsFirst(State state, List<Action> actions) {
+    int mover = state.currentPlayer();
+    Coordinates opponent = (mover == 1) ? state.playerTwoPosition() : state.playerOnePosition();
+    long opponentNeighbors = State.NEIGHBOR_MASKS[opponent.cellIndex()] & state.availableMask();
+    int front = 0;
+    for (int i = 0; i < actions.size(); i++) {
+      Action a = actions.get(i);
+      long replies = opponentNeighbors & ~(1L << a.destinationCell.cellIndex()) & ~(1L << a.tokenToRemove.cellIndex());
+      if (replies == 0) actions.add(front++, actions.remove(i));
+    }
+  }
+
+  /**
+   * Formats a score for display: "win in n" or "loss in n" (plies) for proven results, else the number.
+   * @param score a search score
+   * @return
+   */
+  public static String formatScore(int score) {
+    if (score >= MATE_BOUND) return "win in " + (MATE_SCORE - score);
+    if (score <= -MATE_BOUND) return "loss in " + (MATE_SCORE + score);
+    return Integer.toString(score);
+  }
+
+  /**
+   * Continues a principal variation with the best moves stored in the table, up to the given length.
+   */
+  private void extendFromTable(List<Action> pv, State root, int length, SearchContext ctx) {
+    State s = root;
+    for (Action a : pv) s = s.apply(a);
+    while (pv.size() < length && s.winnerIfTerminal() == 0) {
+      CanonicalPosition canon = tableKey(s);
+      int slot = ctx.table.probe(canon.key);
+      Action stored = (slot < 0) ? null : ctx.table.move(slot);
+      if (stored == null) break;
+      Action next = canon.fromCanonical(stored);
+      if (!s.isLegalAction(next)) break;
+      pv.add(next);
+      s = s.apply(next);
+    }
+  }
+
+  /**
+   * Sets a listener that receives progress snapshots while {@link #choose(State)} runs, at most
+   * once per interval plus a final snapshot when the search ends. Pass null to remove it.
+   * @param listener the listener, or null
+   * @param intervalMillis minimum time between snapshots
+   */
+  public void setSearchListener(SearchListener listener, long intervalMillis) {
+    this.reportIntervalNanos = intervalMillis * 1_000_000L;
+    this.listener = listener;
+  }
+
+  /**
+   * Limits the time of each {@link #choose(State)} call. When the limit passes, the search stops
+   * and plays the best move of the last depth it finished (see {@link #choose(State)}). Pass 0 for no limit.
+   * @param millis the time limit in milliseconds
+   */
+  public void setTimeLimit(long millis) {
+    this.timeLimitNanos = millis * 1_000_000L;
+  }
+
+  /**
+   * Switches a search technique on or off for later searches, e.g. to measure what it is worth.
+   * @param feature the technique
+   * @param enabled whether to use it
+   */
+  public void setSearchFeature(SearchFeature feature, boolean enabled) {
+    EnumSet<SearchFeature> updated = EnumSet.copyOf(features);
+    if (enabled) updated.add(feature); else updated.remove(feature);
+    features = updated;
+  }
+
+  /**
+   * Returns the search score of the action returned by the last call to {@link #choose(State)},
+   * from the point of view of the player who was to move.
+   * @return The root score of the last search.
+   */
+  public int lastScore() {
+    return lastScore;
+  }
+
   /**
    * Minimize function for the Minimax algorithm with alpha-beta pruning.
    * @param state The current game state.
@@ -76,24 +429,55 @@ public class MinMaxAgent implements Agent {
    * @param alpha The alpha value for pruning.
    * @param beta The beta value for pruning.
    * @param maximizingPlayer The player for whom we are maximizing the score.
+   * @param ctx Bookkeeping for the current search.
    * @return The minimum score achievable from this state.
    */
-  private double minimize(State state, int depth, double alpha, double beta, int maximizingPlayer) {
+  private int minimize(State state, int depth, int alpha, int beta, int maximizingPlayer, SearchContext ctx) {
+    ctx.countNode();
+    ctx.pvLength[depth] = 0;
     int winner = state.winnerIfTerminal();
-    if (winner != 0) return terminalUtility(winner, maximizingPlayer);
-    if (depth >= maximumSearchDepth) return evaluateLeaf(state, maximizingPlayer);
+    if (winner != 0) return terminalUtility(winner, maximizingPlayer, depth);
 
-    double best = Double.POSITIVE_INFINITY;
-    List<Action> actions = new ArrayList<>(state.legalActions());
-    if (randomizeExpansionOrder) Collections.shuffle(actions, random);
+    // Mate-distance pruning: the game cannot end before the next ply, so no score here is better
+    // than winning there or worse than losing there.
+    if (ctx.mateDistancePruning) {
+      int bestPossible = MATE_SCORE - depth - 1;
+      if (bestPossible <= alpha) return bestPossible;
+      if (-bestPossible >= beta) return -bestPossible;
+    }
+    if (depth >= ctx.depthLimit) return evaluateLeaf(state, maximizingPlayer, depth, ctx);
+
+    final int alphaOriginal = alpha, betaOriginal = beta;
+    CanonicalPosition canon = null;
+    Action hashMove = null;
+    if (ctx.table != null) {
+      canon = tableKey(state);
+      int stored = probeTable(state, canon, depth, ctx.depthLimit - depth, alpha, beta, maximizingPlayer, ctx);
+      if (stored != NO_SCORE) return stored;
+      hashMove = ctx.hashMove;
+    } else if (ctx.followingPv && depth < ctx.previousPv.length) {
+      hashMove = ctx.previousPv[depth];
+    }
+    final boolean onPv = ctx.followingPv;
 
-    for (Action action : actions) {
-      State next = state.apply(action);
-      double score = maximize(next, depth + 1, alpha, beta, maximizingPlayer);
-      if (score < best) best = score;
+    int best = INFINITY;
+    Action bestAction = null;
+    for (Action action : orderedActions(state, hashMove, ctx)) {
+      // Only the previous iteration's move keeps following its line below this node.
+      ctx.followingPv = onPv && hashMove != null && sameMove(action, hashMove);
+      State next = makeMove(state, action, ctx);
+      int score = maximize(next, depth + 1, alpha, beta, maximizingPlayer, ctx);
+      unmakeMove(ctx);
+      if (ctx.stopped) return best;
+      if (score < best) {
+        best = score;
+        bestAction = action;
+        ctx.updatePv(depth, action);
+      }
       beta = Math.min(beta, best);
       if (alpha >= beta) break;
     }
+    if (canon != null) storeInTable(state, canon, depth, ctx.depthLimit - depth, best, alphaOriginal, betaOriginal, bestAction, maximizingPlayer, ctx);
     return best;
   }
 
@@ -104,50 +488,204 @@ public class MinMaxAgent implements Agent {
    * @param alpha The alpha value for pruning.
    * @param beta The beta value for pruning.
    * @param maximizingPlayer The player for whom we are maximizing the score.
+   * @param ctx Bookkeeping for the current search.
    * @return The maximum score achievable from this state.
    */
-  private double maximize(State state, int depth, double alpha, double beta, int maximizingPlayer) {
+  private int maximize(State state, int depth, int alpha, int beta, int maximizingPlayer, SearchContext ctx) {
+    ctx.countNode();
+    ctx.pvLength[depth] = 0;
     int winner = state.winnerIfTerminal();
-    if (winner != 0) return terminalUtility(winner, maximizingPlayer);
-    if (depth >= maximumSearchDepth) return evaluateLeaf(state, maximizingPlayer);
+    if (winner != 0) return terminalUtility(winner, maximizingPlayer, depth);
 
-    double best = Double.NEGATIVE_INFINITY;
-    List<Action> actions = new ArrayList<>(state.legalActions());
-    if (randomizeExpansionOrder) Collections.shuffle(actions, random);
+    // Mate-distance pruning: the game cannot end before the next ply, so no score here is better
+    // than winning there or worse than losing there.
+    if (ctx.mateDistancePruning) {
+      int bestPossible = MATE_SCORE - depth - 1;
+      if (bestPossible <= alpha) return bestPossible;
+      if (-bestPossible >= beta) return -bestPossible;
+    }
+    if (depth >= ctx.depthLimit) return evaluateLeaf(state, maximizingPlayer, depth, ctx);
 
-    for (Action action : actions) {
-      State next = state.apply(action);
-      double score = minimize(next, depth + 1, alpha, beta, maximizingPlayer);
-      if (score > best) best = score;
+    final int alphaOriginal = alpha, betaOriginal = beta;
+    CanonicalPosition canon = null;
+    Action hashMove = null;
+    if (ctx.table != null) {
+      canon = tableKey(state);
+      int stored = probeTable(state, canon, depth, ctx.depthLimit - depth, alpha, beta, maximizingPlayer, ctx);
+      if (stored != NO_SCORE) return stored;
+      hashMove = ctx.hashMove;
+    } else if (ctx.followingPv && depth < ctx.previousPv.length) {
+      hashMove = ctx.previousPv[depth];
+    }
+    final boolean onPv = ctx.followingPv;
+
+    int best = -INFINITY;
+    Action bestAction = null;
+    for (Action action : orderedActions(state, hashMove, ctx)) {
+      // Only the previous iteration's move keeps following its line below this node.
+      ctx.followingPv = onPv && hashMove != null && sameMove(action, hashMove);
+      State next = makeMove(state, action, ctx);
+      int score = minimize(next, depth + 1, alpha, beta, maximizingPlayer, ctx);
+      unmakeMove(ctx);
+      if (ctx.stopped) return best;
+      if (score > best) {
+        best = score;
+        bestAction = action;
+        ctx.updatePv(depth, action);
+      }
       alpha = Math.max(alpha, best);
       if (alpha >= beta) break;
     }
+    if (canon != null) storeInTable(state, canon, depth, ctx.depthLimit - depth, best, alphaOriginal, betaOriginal, bestAction, maximizingPlayer, ctx);
     return best;
   }
 
   /**
-   * Returns a large positive or negative utility value based on whether the maximizing player has won.
+   * Applies a move for the search, letting an incremental heuristic follow the line.
+   */
+  private State makeMove(State state, Action action, SearchContext ctx) {
+    State next = state.apply(action);
+    if (ctx.incremental != null) ctx.incremental.makeMove(state, action, next);
+    return next;
+  }
+
+  /**
+   * Takes back the last move passed to {@link #makeMove(State, Action, SearchContext)}.
+   */
+  private void unmakeMove(SearchContext ctx) {
+    if (ctx.incremental != null) ctx.incremental.unmakeMove();
+  }
+
+  /**
+   * Keys a position for the transposition table: canonical, so reflections and the colour swap share
+   * an entry, unless the heuristic scores those differently.
+   */
+  private CanonicalPosition tableKey(State state) {
+    return heuristic.isSymmetric() ? CanonicalPosition.of(state) : CanonicalPosition.exact(state);
+  }
+
+  /**
+   * Returns the legal actions in search order: shuffled if the search randomizes, and with the
+   * table's move for this position, or the previous iteration's move on its principal variation,
+   * first (if any).
+   */
+  private List<Action> orderedActions(State state, Action hashMove, SearchContext ctx) {
+    List<Action> actions = new ArrayList<>(state.legalActions());
+    if (ctx.randomize) Collections.shuffle(actions, random);
+    if (hashMove != null) {
+      for (int i = 0; i < actions.size(); i++) {
+        if (sameMove(actions.get(i), hashMove)) {
+          Collections.swap(actions, 0, i);
+          break;
+        }
+      }
+    }
+    return actions;
+  }
+
+  private static boolean sameMove(Action a, Action b) {
+    return a.destinationCell.cellIndex() == b.destinationCell.cellIndex()
+            && a.tokenToRemove.cellIndex() == b.tokenToRemove.cellIndex();
+  }
+
+  /**
+   * Looks a position up in the search's table. Leaves the stored move, if any, in {@code ctx.hashMove}.
+   * @return the stored score if it is deep enough and settles the node for this window, otherwise NO_SCORE
+   */
+  private int probeTable(State state, CanonicalPosition canon, int ply, int remainingDepth, int alpha, int beta,
+                         int maximizingPlayer, SearchContext ctx) {
+    ctx.hashMove = null;
+    int slot = ctx.table.probe(canon.key);
+    if (slot < 0) return NO_SCORE;
+    Action stored = ctx.table.move(slot);
+    if (stored != null) ctx.hashMove = canon.fromCanonical(stored);
+    if (ctx.table.depth(slot) < remainingDepth) return NO_SCORE;
+
+    // The table holds scores for the side to move, with mate distances counted from the stored
+    // position; this search scores for the maximizing player with distances from the root.
+    boolean flip = state.currentPlayer() != maximizingPlayer;
+    int score = fromTableScore(flip ? -ctx.table.score(slot) : ctx.table.score(slot), ply);
+    byte bound = ctx.table.bound(slot);
+    if (flip && bound != TranspositionTable.EXACT) {
+      bound = (bound == TranspositionTable.LOWER_BOUND) ? TranspositionTable.UPPER_BOUND : TranspositionTable.LOWER_BOUND;
+    }
+    if (bound == TranspositionTable.EXACT
+            || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+            || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) return score;
+    return NO_SCORE;
+  }
+
+  /**
+   * Stores a node's result, classifying it against the window the node was searched with.
+   */
+  private void storeInTable(State state, CanonicalPosition canon, int ply, int remainingDepth, int best,
+                            int alpha, int beta, Action bestAction, int maximizingPlayer, SearchContext ctx) {
+    byte bound = (best <= alpha) ? TranspositionTable.UPPER_BOUND
+            : (best >= beta) ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+    best = toTableScore(best, ply);
+    if (state.currentPlayer() != maximizingPlayer) {
+      best = -best;
+      if (bound != TranspositionTable.EXACT) {
+        bound = (bound == TranspositionTable.LOWER_BOUND) ? TranspositionTable.UPPER_BOUND : TranspositionTable.LOWER_BOUND;
+      }
+    }
+    ctx.table.store(canon.key, remainingDepth, best, bound, (bestAction == null) ? null : canon.toCanonical(bestAction));
+  }
+
+  /**
+   * Converts a mate score counted from the root to one counted from a position at the given ply.
+   */
+  private static int toTableScore(int score, int ply) {
+    if (score >= MATE_BOUND) return score + ply;
+    if (score <= -MATE_BOUND) return score - ply;
+    return score;
+  }
+
+  /**
+   * Converts a mate score counted from a position at the given ply back to one counted from the root.
+   */
+  private static int fromTableScore(int score, int ply) {
+    if (score >= MATE_BOUND) return score - ply;
+    if (score <= -MATE_BOUND) return score + ply;
+    return score;
+  }
+
+  /**
+   * Returns a mate score based on whether the maximizing player has won and how far from the root.
    * @param winner The player who has won (0 if no winner).
    * @param maximizingPlayer The player for whom we are maximizing the score.
-   * @return A large positive value if the maximizing player has won, otherwise a large negative value.
+   * @param ply The number of moves from the root to the finished position.
+   * @return MATE_SCORE - ply if the maximizing player has won, otherwise -(MATE_SCORE - ply).
    */
-  private double terminalUtility(int winner, int maximizingPlayer) {
-    return (winner == maximizingPlayer) ? 1e9 : -1e9;
+  private int terminalUtility(int winner, int maximizingPlayer, int ply) {
+    return (winner == maximizingPlayer) ? MATE_SCORE - ply : -(MATE_SCORE - ply);
   }
 
   /**
-   * Evaluates a non-terminal game state using the provided heuristic.
+   * Evaluates a non-terminal game state using the provided heuristic: the best heuristic score
+   * among the actions of the player to move. A {@link FeatureHeuristic} scores all of them in one
+   * {@link LeafBatch}; other heuristics are called once per action.
    * @param stateAtDepth The game state to evaluate.
    * @param maximizingPlayer The player for whom we are maximizing the score.
+   * @param ply The number of moves from the root to this state.
+   * @param ctx Bookkeeping for the current search, which holds the leaf batch.
    * @return The heuristic score of the state.
    */
-  private double evaluateLeaf(State stateAtDepth, int maximizingPlayer) {
+  private int evaluateLeaf(State stateAtDepth, int maximizingPlayer, int ply, SearchContext ctx) {
+    int toMove = stateAtDepth.currentPlayer();
+    if (heuristic instanceof FeatureHeuristic && ctx.features.contains(SearchFeature.LEAF_BATCH)) {
+      if (ctx.leafBatch == null) ctx.leafBatch = new LeafBatch();
+      ctx.leafBatch.fill(stateAtDepth);
+      if (ctx.leafBatch.size() == 0) return terminalUtility(stateAtDepth.winnerIfTerminal(), maximizingPlayer, ply);
+      int best = ctx.leafBatch.bestScore((FeatureHeuristic) heuristic);
+      return (toMove == maximizingPlayer) ? best : -best;
+    }
+
     List<Action> actions = stateAtDepth.legalActions();
     if (actions.isEmpty()) {
 
-      return terminalUtility(stateAtDepth.winnerIfTerminal(), maximizingPlayer);
+      return terminalUtility(stateAtDepth.winnerIfTerminal(), maximizingPlayer, ply);
     }
-    int toMove = stateAtDepth.currentPlayer();
     int best = Integer.MIN_VALUE;
     for (Action a : actions) {
       int score = heuristic.evaluate(stateAtDepth, a, toMove);
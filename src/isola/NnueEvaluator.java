@@ -0,0 +1,305 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A learned evaluator in the style of an NNUE network: a quantised feature transformer over
+ * removed-cell and pawn-location features, followed by a clipped ReLU and a single output neuron.
+ *
+ * Each player has an accumulator holding the first layer's output for the position seen from
+ * their side (player 2's view is the board flipped top to bottom, so one set of weights serves
+ * both players). During a search the accumulators follow the search's line: each move made
+ * derives the child's accumulators from the parent's by adding or subtracting one weight column
+ * per changed feature, and unmaking it pops them, so leaves never rebuild them from the board.
+ * Each candidate action at a leaf is scored the same way from the leaf's accumulators.
+ *
+ * The weights are not symmetric under reflections or the colour swap, so the evaluator is not
+ * {@link Heuristic#isSymmetric() symmetric}. Weights are produced by {@link NnueTrainer}.
+ *
+ * Weights file (little-endian): magic "ISNN", int version (1), int hidden size, int output shift,
+ * then int16 feature biases [hidden], int16 feature weights [3 * 48][hidden] (removed cell, own pawn,
+ * other pawn; one contiguous column per feature), int16 output weights [2 * hidden] (side to move
+ * half first) and an int32 output bias.
+ */
+public final class NnueEvaluator implements IncrementalHeuristic {
+  static final int CELLS = State.ROW_COUNT * State.COLUMN_COUNT;
+  static final int FEATURES = 3 * CELLS;
+  static final int ACTIVATION_MAX = 127;
+  static final int WIN_SCORE = 10_000;
+
+  private static final int MAGIC = 0x4E4E5349; // "ISNN" read little-endian
+  private static final int VERSION = 1;
+
+  private final int hiddenSize;
+  private final short[] featureBias;
+  private final short[] featureWeights;
+  private final short[] outputWeights;
+  private final int outputBias;
+  private final int outputShift;
+
+  private final ThreadLocal<Accumulators> scratch;
+
+  /**
+   * Per-thread accumulators: a stack following the search's line, one pair for a position evaluated
+   * outside the line, and one for the position after a candidate action.
+   */
+  private static final class Accumulators {
+    final int hiddenSize;
+    State[] lineStates = new State[0];
+    short[][][] line = new short[0][][];
+    int top = -1;
+    State offLineState = null;
+    final short[][] offLine;
+    final short[][] next;
+
+    Accumulators(int hiddenSize) {
+      this.hiddenSize = hiddenSize;
+      offLine = new short[2][hiddenSize];
+      next = new short[2][hiddenSize];
+    }
+
+    void ensureDepth(int depth) {
+      if (depth < line.length) return;
+      int capacity = Math.max(depth + 1, 2 * line.length);
+      lineStates = Arrays.copyOf(lineStates, capacity);
+      line = Arrays.copyOf(line, capacity);
+      for (int i = 0; i < capacity; i++) if (line[i] == null) line[i] = new short[2][hiddenSize];
+    }
+  }
+
+  /**
+   * Creates an evaluator from quantised weights (see the class comment for their layout).
+   */
+  NnueEvaluator(int hiddenSize, short[] featureBias, short[] featureWeights,
+                short[] outputWeights, int outputBias, int outputShift) {
+    if (featureBias.length != hiddenSize || featureWeights.length != FEATURES * hiddenSize
+            || outputWeights.length != 2 * hiddenSize) {
+      throw new IllegalArgumentException("weight shapes do not match hidden size " + hiddenSize);
+    }
+    this.hiddenSize = hiddenSize;
+    this.featureBias = featureBias;
+    this.featureWeights = featureWeights;
+    this.outputWeights = outputWeights;
+    this.outputBias = outputBias;
+    this.outputShift = outputShift;
+    this.scratch = ThreadLocal.withInitial(() -> new Accumulators(hiddenSize));
+  }
+
+  /**
+   * Loads an evaluator from a weights file.
+   * @param path the weights file
+   * @return the evaluator
+   * @throws IOException if the file cannot be read or is not a weights file
+   */
+  public static NnueEvaluator load(Path path) throws IOException {
+    ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+    if (in.remaining() < 16 || in.getInt() != MAGIC) throw new IOException(path + " is not an NNUE weights file");
+    int version = in.getInt();
+    if (version != VERSION) throw new IOException(path + " has unsupported weights version " + version);
+    int hidden = in.getInt();
+    int shift = in.getInt();
+    long expected = 2L * (hidden + (long) FEATURES * hidden + 2L * hidden) + 4;
+    if (hidden <= 0 || in.remaining() != expected) throw new IOException(path + " has the wrong size for hidden size " + hidden);
+
+    short[] bias = new short[hidden];
+    short[] weights = new short[FEATURES * hidden];
+    short[] output = new short[2 * hidden];
+    in.asShortBuffer().get(bias);
+    in.position(in.position() + 2 * bias.length);
+    in.asShortBuffer().get(weights);
+    in.position(in.position() + 2 * weights.length);
+    in.asShortBuffer().get(output);
+    in.position(in.position() + 2 * output.length);
+    return new NnueEvaluator(hidden, bias, weights, output, in.getInt(), shift);
+  }
+
+  /**
+   * Writes the weights in the format {@link #load(Path)} reads.
+   * @param path the weights file to create or replace
+   * @throws IOException if the file cannot be written
+   */
+  void save(Path path) throws IOException {
+    ByteBuffer out = ByteBuffer.allocate(16 + 2 * (featureBias.length + featureWeights.length + outputWeights.length) + 4)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    out.putInt(MAGIC).putInt(VERSION).putInt(hiddenSize).putInt(outputShift);
+    for (short w : featureBias) out.putShort(w);
+    for (short w : featureWeights) out.putShort(w);
+    for (short w : outputWeights) out.putShort(w);
+    out.putInt(outputBias);
+    Files.write(path, out.array());
+  }
+
+  /**
+   * Scores the position after {@code action} for {@code player}, the player making the action.
+   * @param state the position before the action
+   * @param action an action for the player to move
+   * @param player the player making the action
+   * @return the score of the resulting position from the player's point of view
+   */
+  @Override
+  public int evaluate(State state, Action action, int player) {
+    int opponent = (player == 1) ? 2 : 1;
+    if (isolatesOpponent(state, action, player)) return WIN_SCORE;
+
+    Accumulators acc = scratch.get();
+    short[][] base;
+    if (acc.top >= 0 && acc.lineStates[acc.top] == state) {
+      base = acc.line[acc.top];
+    } else {
+      if (acc.offLineState != state) {
+        refresh(state, acc.offLine[0], 1);
+        refresh(state, acc.offLine[1], 2);
+        acc.offLineState = state;
+      }
+      base = acc.offLine;
+    }
+    applyAction(state, action, player, base, acc.next);
+    // The network scores for the side to move, which after the action is the opponent.
+    return -output(acc.next[opponent - 1], acc.next[player - 1]);
+  }
+
+  @Override
+  public void startSearch(State root) {
+    Accumulators acc = scratch.get();
+    acc.ensureDepth(0);
+    refresh(root, acc.line[0][0], 1);
+    refresh(root, acc.line[0][1], 2);
+    acc.lineStates[0] = root;
+    acc.top = 0;
+  }
+
+  @Override
+  public void makeMove(State parent, Action action, State child) {
+    Accumulators acc = scratch.get();
+    // A caller that skipped startSearch, or a line that lost track, restarts from the parent.
+    if (acc.top < 0 || acc.lineStates[acc.top] != parent) startSearch(parent);
+    acc.ensureDepth(acc.top + 1);
+    applyAction(parent, action, parent.currentPlayer(), acc.line[acc.top], acc.line[acc.top + 1]);
+    acc.lineStates[++acc.top] = child;
+  }
+
+  @Override
+  public void unmakeMove() {
+    Accumulators acc = scratch.get();
+    if (acc.top < 0) return;
+    acc.lineStates[acc.top--] = null;
+  }
+
+  @Override
+  public boolean isSymmetric() {
+    return false;
+  }
+
+  /**
+   * Scores a position for the side to move, computing the accumulators from scratch.
+   * @param state the position
+   * @return the network score for the player to move
+   */
+  public int evaluatePosition(State state) {
+    short[] mine = new short[hiddenSize];
+    short[] theirs = new short[hiddenSize];
+    int toMove = state.currentPlayer();
+    refresh(state, mine, toMove);
+    refresh(state, theirs, (toMove == 1) ? 2 : 1);
+    return output(mine, theirs);
+  }
+
+  /**
+   * Builds a perspective's accumulator from the biases and every active feature.
+   */
+  private void refresh(State state, short[] acc, int perspective) {
+    System.arraycopy(featureBias, 0, acc, 0, hiddenSize);
+    for (int cell = 0; cell < CELLS; cell++) {
+      if (!state.isCellAvailable(cell / State.COLUMN_COUNT, cell % State.COLUMN_COUNT)) {
+        add(acc, column(perspective, 0, cell));
+      }
+    }
+    Coordinates own = (perspective == 1) ? state.playerOnePosition() : state.playerTwoPosition();
+    Coordinates other = (perspective == 1) ? state.playerTwoPosition() : state.playerOnePosition();
+    add(acc, column(perspective, CELLS, own.cellIndex()));
+    add(acc, column(perspective, 2 * CELLS, other.cellIndex()));
+  }
+
+  /**
+   * Writes the accumulators of the position after {@code player} takes {@code action} into {@code target}.
+   */
+  private void applyAction(State state, Action action, int player, short[][] base, short[][] target) {
+    Coordinates from = (player == 1) ? state.playerOnePosition() : state.playerTwoPosition();
+    int removed = action.tokenToRemove.cellIndex();
+    int fromCell = from.cellIndex();
+    int toCell = action.destinationCell.cellIndex();
+    for (int perspective = 1; perspective <= 2; perspective++) {
+      int pawnBlock = (perspective == player) ? CELLS : 2 * CELLS;
+      update(base[perspective - 1], target[perspective - 1],
+              column(perspective, 0, removed),
+              column(perspective, pawnBlock, fromCell),
+              column(perspective, pawnBlock, toCell));
+    }
+  }
+
+  private void add(short[] acc, int column) {
+    for (int h = 0; h < hiddenSize; h++) acc[h] += featureWeights[column + h];
+  }
+
+  /**
+   * Writes {@code base} plus the removed-cell column, minus the old pawn column, plus the new pawn
+   * column into {@code target} in a single pass.
+   */
+  private void update(short[] base, short[] target, int removedColumn, int fromColumn, int toColumn) {
+    short[] w = featureWeights;
+    for (int h = 0; h < hiddenSize; h++) {
+      target[h] = (short) (base[h] + w[removedColumn + h] - w[fromColumn + h] + w[toColumn + h]);
+    }
+  }
+
+  /**
+   * Clipped ReLU over both accumulators followed by the output neuron, in int32.
+   */
+  private int output(short[] sideToMove, short[] other) {
+    int sum = 0;
+    for (int h = 0; h < hiddenSize; h++) {
+      sum += clamp(sideToMove[h]) * outputWeights[h];
+    }
+    for (int h = 0; h < hiddenSize; h++) {
+      sum += clamp(other[h]) * outputWeights[hiddenSize + h];
+    }
+    int score = (sum + outputBias) >> outputShift;
+    return Math.max(-WIN_SCORE + 1, Math.min(WIN_SCORE - 1, score));
+  }
+
+  private static int clamp(short value) {
+    return Math.max(0, Math.min(ACTIVATION_MAX, value));
+  }
+
+  /**
+   * Start of the weight column for a feature block and cell, seen from the given perspective.
+   */
+  private int column(int perspective, int block, int cell) {
+    if (perspective == 2) {
+      cell = (State.ROW_COUNT - 1 - cell / State.COLUMN_COUNT) * State.COLUMN_COUNT + cell % State.COLUMN_COUNT;
+    }
+    return (block + cell) * hiddenSize;
+  }
+
+  /**
+   * Checks whether the action leaves the opponent without a legal destination.
+   */
+  private static boolean isolatesOpponent(State state, Action action, int player) {
+    Coordinates opponent = (player == 1) ? state.playerTwoPosition() : state.playerOnePosition();
+    for (Coordinates n : state.neighborsOf(opponent)) {
+      if (!state.isCellAvailable(n.rowIndex, n.columnIndex)) continue;
+      boolean removed = n.rowIndex == action.tokenToRemove.rowIndex && n.columnIndex == action.tokenToRemove.columnIndex;
+      boolean pawn = n.rowIndex == action.destinationCell.rowIndex && n.columnIndex == action.destinationCell.columnIndex;
+      if (!removed && !pawn) return false;
+    }
+    return true;
+  }
+}
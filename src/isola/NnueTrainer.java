@@ -0,0 +1,334 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Trains {@link NnueEvaluator} weights on {@link SelfPlayGenerator} shards.
+ *
+ * The network is trained in floating point with the evaluator's exact shape: one shared feature
+ * layer applied from both players' views, a clipped ReLU to [0, 1] and a single output. The output
+ * is read as a win probability of sigmoid(output / {@link #OUTPUT_SCALE}) for the side to move and
+ * trained with cross-entropy against the game result. Every sample is used in a random reflection
+ * of the board. The last {@link #VALIDATION_FRACTION} of the samples (the latest games) are held out
+ * to report loss and accuracy after each epoch.
+ *
+ * The trained weights are quantised for the evaluator: feature-layer values are scaled by
+ * {@link NnueEvaluator#ACTIVATION_MAX} to int16, and the output layer is scaled so that the shifted
+ * int32 sum comes out in the float network's units.
+ */
+public class NnueTrainer {
+  static final double OUTPUT_SCALE = 400.0;
+  static final double VALIDATION_FRACTION = 0.05;
+
+  private static final int CELLS = NnueEvaluator.CELLS;
+  private static final int BATCH_SIZE = 512;
+  private static final float WEIGHT_CLIP = 2.0f;
+  private static final double BETA1 = 0.9, BETA2 = 0.999, EPSILON = 1e-8;
+
+  private final int hidden;
+  private final Random random;
+
+  // Parameters: feature biases, feature weights (one column of `hidden` per feature), output
+  // weights (side to move half first) and output bias, as in NnueEvaluator.
+  private final float[] params;
+  private final int weightsOffset;
+  private final int outputOffset;
+  private final int outputBiasIndex;
+
+  private final float[] gradient;
+  private final float[] firstMoment;
+  private final float[] secondMoment;
+  private int steps = 0;
+
+  // Training samples, as stored in the shards
+  private long[] masks = new long[0];
+  private byte[] playerOneCells = new byte[0];
+  private byte[] playerTwoCells = new byte[0];
+  private byte[] sideToMove = new byte[0];
+  private byte[] results = new byte[0];
+  private int size = 0;
+
+  // Scratch for one sample
+  private final int[][] active = new int[2][CELLS + 2];
+  private final int[] activeCount = new int[2];
+  private final float[][] accumulators;
+
+  /**
+   * Creates a trainer with small random initial weights.
+   * @param hidden the number of feature-layer neurons per view
+   * @param seed seed for the initial weights and the sample order
+   */
+  public NnueTrainer(int hidden, long seed) {
+    if (hidden < 1) throw new IllegalArgumentException("hidden must be positive");
+    this.hidden = hidden;
+    this.random = new Random(seed);
+    weightsOffset = hidden;
+    outputOffset = weightsOffset + NnueEvaluator.FEATURES * hidden;
+    outputBiasIndex = outputOffset + 2 * hidden;
+    params = new float[outputBiasIndex + 1];
+    gradient = new float[params.length];
+    firstMoment = new float[params.length];
+    secondMoment = new float[params.length];
+    accumulators = new float[2][hidden];
+
+    for (int h = 0; h < hidden; h++) params[h] = 0.25f;
+    for (int i = weightsOffset; i < outputOffset; i++) params[i] = (float) (random.nextGaussian() * 0.05);
+    for (int i = outputOffset; i < outputBiasIndex; i++) params[i] = (float) (random.nextGaussian() * 50.0 / Math.sqrt(hidden));
+  }
+
+  /**
+   * Reads every shard file ("positions-*.bin.gz") of a self-play directory.
+   * @param directory the directory the generator wrote to
+   * @return the number of samples read
+   * @throws IOException if a shard cannot be read
+   */
+  public int readShards(Path directory) throws IOException {
+    List<Path> shards;
+    try (Stream<Path> files = Files.list(directory)) {
+      shards = files.filter(p -> p.getFileName().toString().matches("positions-\\d+\\.bin\\.gz"))
+              .sorted().collect(Collectors.toList());
+    }
+    if (shards.isEmpty()) throw new IOException("no shard files in " + directory);
+    for (Path shard : shards) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+              new GZIPInputStream(Files.newInputStream(shard), 1 << 16), 1 << 16))) {
+        while (true) {
+          long mask;
+          try {
+            mask = in.readLong();
+          } catch (EOFException e) {
+            break;
+          }
+          ensureCapacity(size + 1);
+          masks[size] = mask;
+          playerOneCells[size] = in.readByte();
+          playerTwoCells[size] = in.readByte();
+          sideToMove[size] = in.readByte();
+          results[size] = in.readByte();
+          in.readFloat(); // search score, not used: the target is the game result
+          size++;
+        }
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Trains for the given number of passes over the training samples, printing the validation
+   * loss and accuracy after each.
+   * @param epochs number of passes
+   * @param learningRate Adam step size
+   */
+  public void train(int epochs, double learningRate) {
+    int validationStart = (int) (size * (1 - VALIDATION_FRACTION));
+    int[] order = new int[validationStart];
+    for (int i = 0; i < order.length; i++) order[i] = i;
+
+    for (int epoch = 1; epoch <= epochs; epoch++) {
+      long start = System.currentTimeMillis();
+      for (int i = order.length - 1; i > 0; i--) {
+        int j = random.nextInt(i + 1);
+        int t = order[i]; order[i] = order[j]; order[j] = t;
+      }
+      double trainingLoss = 0;
+      for (int b = 0; b < order.length; b += BATCH_SIZE) {
+        int end = Math.min(order.length, b + BATCH_SIZE);
+        Arrays.fill(gradient, 0);
+        for (int i = b; i < end; i++) {
+          Symmetry symmetry = Symmetry.values()[random.nextInt(Symmetry.values().length)];
+          trainingLoss += backward(order[i], symmetry, 1.0 / (end - b));
+        }
+        adamStep(learningRate);
+      }
+
+      double validationLoss = 0;
+      int correct = 0;
+      for (int i = validationStart; i < size; i++) {
+        double out = forward(i, Symmetry.IDENTITY);
+        validationLoss += loss(out, target(i));
+        if ((out > 0) == (results[i] > 0)) correct++;
+      }
+      int validationSize = Math.max(1, size - validationStart);
+      System.out.printf("epoch %d: training loss %.4f, validation loss %.4f, accuracy %.1f%% (%.1f s)%n",
+              epoch, trainingLoss / Math.max(1, order.length), validationLoss / validationSize,
+              100.0 * correct / validationSize, (System.currentTimeMillis() - start) / 1000.0);
+    }
+  }
+
+  /**
+   * Quantises the trained network into an evaluator.
+   * @return
+   */
+  public NnueEvaluator toEvaluator() {
+    int max = NnueEvaluator.ACTIVATION_MAX;
+    short[] bias = new short[hidden];
+    short[] weights = new short[NnueEvaluator.FEATURES * hidden];
+    short[] output = new short[2 * hidden];
+    for (int h = 0; h < hidden; h++) bias[h] = (short) Math.round(params[h] * max);
+    for (int i = 0; i < weights.length; i++) weights[i] = (short) Math.round(params[weightsOffset + i] * max);
+
+    // The largest shift that keeps every output weight within int16
+    float largest = 1e-6f;
+    for (int i = 0; i < output.length; i++) largest = Math.max(largest, Math.abs(params[outputOffset + i]));
+    int shift = 0;
+    while (shift < 16 && largest * (1 << (shift + 1)) / max <= Short.MAX_VALUE) shift++;
+    for (int i = 0; i < output.length; i++) {
+      output[i] = (short) Math.round(params[outputOffset + i] * (1 << shift) / max);
+    }
+    int outputBias = Math.round(params[outputBiasIndex] * (1 << shift));
+    return new NnueEvaluator(hidden, bias, weights, output, outputBias, shift);
+  }
+
+  /**
+   * Collects the active feature indices of sample {@code i} (reflected by {@code symmetry}) for both
+   * views: index 0 is the side to move, 1 the other player. Mirrors NnueEvaluator's feature columns.
+   */
+  private void collectFeatures(int i, Symmetry symmetry) {
+    long removed = ~symmetry.mapMask(masks[i]) & ((1L << CELLS) - 1);
+    int p1 = symmetry.mapCell(playerOneCells[i]);
+    int p2 = symmetry.mapCell(playerTwoCells[i]);
+    int mover = sideToMove[i];
+    for (int view = 0; view < 2; view++) {
+      int perspective = (view == 0) ? mover : 3 - mover;
+      int n = 0;
+      for (long m = removed; m != 0; m &= m - 1) active[view][n++] = viewCell(perspective, Long.numberOfTrailingZeros(m));
+      int own = (perspective == 1) ? p1 : p2;
+      int other = (perspective == 1) ? p2 : p1;
+      active[view][n++] = CELLS + viewCell(perspective, own);
+      active[view][n++] = 2 * CELLS + viewCell(perspective, other);
+      activeCount[view] = n;
+    }
+  }
+
+  private static int viewCell(int perspective, int cell) {
+    if (perspective == 1) return cell;
+    return (State.ROW_COUNT - 1 - cell / State.COLUMN_COUNT) * State.COLUMN_COUNT + cell % State.COLUMN_COUNT;
+  }
+
+  /**
+   * Computes the network output for sample {@code i}, leaving the accumulators in place.
+   */
+  private double forward(int i, Symmetry symmetry) {
+    collectFeatures(i, symmetry);
+    double out = params[outputBiasIndex];
+    for (int view = 0; view < 2; view++) {
+      float[] acc = accumulators[view];
+      System.arraycopy(params, 0, acc, 0, hidden);
+      for (int k = 0; k < activeCount[view]; k++) {
+        int column = weightsOffset + active[view][k] * hidden;
+        for (int h = 0; h < hidden; h++) acc[h] += params[column + h];
+      }
+      int outputColumn = outputOffset + view * hidden;
+      for (int h = 0; h < hidden; h++) out += clip(acc[h]) * params[outputColumn + h];
+    }
+    return out;
+  }
+
+  /**
+   * Adds the weighted loss gradient of sample {@code i} to {@link #gradient}.
+   * @return the sample's loss
+   */
+  private double backward(int i, Symmetry symmetry, double weight) {
+    double out = forward(i, symmetry);
+    double t = target(i);
+    float g = (float) (weight * (sigmoid(out / OUTPUT_SCALE) - t) / OUTPUT_SCALE);
+    gradient[outputBiasIndex] += g;
+    for (int view = 0; view < 2; view++) {
+      float[] acc = accumulators[view];
+      int outputColumn = outputOffset + view * hidden;
+      for (int h = 0; h < hidden; h++) {
+        gradient[outputColumn + h] += g * clip(acc[h]);
+        // The clipped ReLU passes the gradient only between its limits.
+        acc[h] = (acc[h] > 0 && acc[h] < 1) ? g * params[outputColumn + h] : 0;
+      }
+      for (int h = 0; h < hidden; h++) gradient[h] += acc[h];
+      for (int k = 0; k < activeCount[view]; k++) {
+        int column = weightsOffset + active[view][k] * hidden;
+        for (int h = 0; h < hidden; h++) gradient[column + h] += acc[h];
+      }
+    }
+    return loss(out, t);
+  }
+
+  private void adamStep(double learningRate) {
+    steps++;
+    double correction1 = 1 - Math.pow(BETA1, steps);
+    double correction2 = 1 - Math.pow(BETA2, steps);
+    for (int i = 0; i < params.length; i++) {
+      float g = gradient[i];
+      firstMoment[i] = (float) (BETA1 * firstMoment[i] + (1 - BETA1) * g);
+      secondMoment[i] = (float) (BETA2 * secondMoment[i] + (1 - BETA2) * g * g);
+      // The output layer works in score units, so it takes proportionally larger steps.
+      double rate = (i >= outputOffset) ? learningRate * OUTPUT_SCALE : learningRate;
+      params[i] -= (float) (rate * (firstMoment[i] / correction1) / (Math.sqrt(secondMoment[i] / correction2) + EPSILON));
+      if (i >= weightsOffset && i < outputOffset) params[i] = Math.max(-WEIGHT_CLIP, Math.min(WEIGHT_CLIP, params[i]));
+    }
+  }
+
+  private double target(int i) {
+    return (results[i] > 0) ? 1.0 : 0.0;
+  }
+
+  private static double loss(double out, double target) {
+    double p = Math.min(1 - 1e-7, Math.max(1e-7, sigmoid(out / OUTPUT_SCALE)));
+    return -(target * Math.log(p) + (1 - target) * Math.log(1 - p));
+  }
+
+  private static double sigmoid(double x) {
+    return 1.0 / (1.0 + Math.exp(-x));
+  }
+
+  private static float clip(float x) {
+    return Math.max(0f, Math.min(1f, x));
+  }
+
+  private void ensureCapacity(int needed) {
+    if (needed <= masks.length) return;
+    int capacity = Math.max(needed, Math.max(1024, masks.length * 2));
+    masks = Arrays.copyOf(masks, capacity);
+    playerOneCells = Arrays.copyOf(playerOneCells, capacity);
+    playerTwoCells = Arrays.copyOf(playerTwoCells, capacity);
+    sideToMove = Arrays.copyOf(sideToMove, capacity);
+    results = Arrays.copyOf(results, capacity);
+  }
+
+  /**
+   * Command-line entry point.
+   * @param args shard directory and weights file, then optionally: epochs, hidden size, learning rate, seed
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("usage: NnueTrainer <shardDir> <weightsFile> [epochs] [hidden] [learningRate] [seed]");
+      System.exit(2);
+    }
+    Path shards = Paths.get(args[0]);
+    Path weights = Paths.get(args[1]);
+    int epochs = (args.length > 2) ? Integer.parseInt(args[2]) : 8;
+    int hidden = (args.length > 3) ? Integer.parseInt(args[3]) : 32;
+    double learningRate = (args.length > 4) ? Double.parseDouble(args[4]) : 1e-3;
+    long seed = (args.length > 5) ? Long.parseLong(args[5]) : 1L;
+
+    NnueTrainer trainer = new NnueTrainer(hidden, seed);
+    System.out.printf("Read %d samples%n", trainer.readShards(shards));
+    trainer.train(epochs, learningRate);
+    NnueEvaluator evaluator = trainer.toEvaluator();
+    if (weights.getParent() != null) Files.createDirectories(weights.getParent());
+    evaluator.save(weights);
+    System.out.printf("Wrote %s%n", weights);
+  }
+}
@@ -5,6 +5,10 @@ package isola;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The main class for playing the game of Isola.
@@ -16,6 +20,8 @@ public class Play {
   private final JLabel status = new JLabel(" ");
   private final BoardPanel board;
   private final JButton resetBtn = new JButton("Reset");
+  private final JCheckBox analysisBox = new JCheckBox("Analysis");
+  private final JButton hintBtn = new JButton("Hint");
 
   private enum Phase { SELECT_MOVE, SELECT_REMOVE, AI_THINKING }
   private Phase phase = Phase.SELECT_MOVE;
@@ -25,10 +31,23 @@ public class Play {
 
   private boolean randomFirst = true;
 
+  // Replay mode: the recorded game being shown and how many of its moves are applied
+  private GameRecord replay = null;
+  private int replayPly = 0;
+
   // AI scheduling guard
   private boolean aiMoveScheduled = false;
   private javax.swing.Timer aiTimer = null;
 
+  // The AI searches on its own thread; a search started before the last reset is ignored.
+  private int searchGeneration = 0;
+  private final AtomicReference<SearchProgress> latestProgress = new AtomicReference<>();
+  private javax.swing.Timer progressTimer = null;
+
+  // Hints rank the top moves with a deeper territory search than the built-in opponents use.
+  private static final int HINT_LINES = 3;
+  private final MinMaxAgent hintAgent = new MinMaxAgent(new HeuristicThree(), 4, false);
+
   /**
    * Create a new Play instance with the specified mode.
    * @param mode the game mode, e.g. "Player vs Computer"
@@ -64,9 +83,18 @@ public class Play {
     board = new BoardPanel(state);
 
     resetBtn.addActionListener(e -> resetGame());
+    analysisBox.addActionListener(e -> { if (!analysisBox.isSelected()) board.setAnalysisMove(null); });
+    for (Agent agent : new Agent[] {agent1, agent2}) {
+      if (agent instanceof MinMaxAgent) ((MinMaxAgent) agent).setSearchListener(latestProgress::set, 100);
+    }
+    progressTimer = new javax.swing.Timer(100, e -> showProgress());
+    hintAgent.setTimeLimit(3000);
+    hintBtn.addActionListener(e -> showHints());
 
     JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
     top.add(resetBtn);
+    top.add(analysisBox);
+    top.add(hintBtn);
     top.add(status);
 
     frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
@@ -81,17 +109,73 @@ public class Play {
     resetGame();
   }
 
+  /**
+   * Create a replay viewer that steps through a recorded game.
+   * @param record the game to replay
+   */
+  public Play(GameRecord record) {
+    replay = record;
+    state = record.initialState();
+    board = new BoardPanel(state);
+
+    JButton firstBtn = new JButton("<<");
+    JButton prevBtn = new JButton("<");
+    JButton nextBtn = new JButton(">");
+    JButton lastBtn = new JButton(">>");
+    firstBtn.addActionListener(e -> showReplayPly(0));
+    prevBtn.addActionListener(e -> showReplayPly(replayPly - 1));
+    nextBtn.addActionListener(e -> showReplayPly(replayPly + 1));
+    lastBtn.addActionListener(e -> showReplayPly(replay.moveCount()));
+
+    JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
+    top.add(firstBtn);
+    top.add(prevBtn);
+    top.add(nextBtn);
+    top.add(lastBtn);
+    top.add(status);
+
+    frame.setTitle("Isolation - " + record.playerOneName() + " vs " + record.playerTwoName());
+    frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+    frame.add(top, BorderLayout.NORTH);
+    frame.add(board, BorderLayout.CENTER);
+
+    frame.pack();
+    frame.setVisible(true);
+
+    showReplayPly(0);
+  }
+
+  /**
+   * Show the recorded game after the given number of moves.
+   * @param ply number of moves to apply, clamped to the length of the game
+   */
+  private void showReplayPly(int ply) {
+    replayPly = Math.max(0, Math.min(ply, replay.moveCount()));
+    state = replay.stateAfter(replayPly);
+    board.setState(state);
+    board.setLastAction(replayPly == 0 ? null : replay.move(replayPly - 1));
+
+    int w = state.winnerIfTerminal();
+    String position = "Move " + replayPly + "/" + replay.moveCount() + ". ";
+    if (w != 0) status.setText(position + "Winner: Player " + w);
+    else status.setText(position + "Player " + state.currentPlayer() + " to move.");
+  }
+
   /**
    * Reset the game to the initial state.
    */
   private void resetGame() {
     if (aiTimer != null) { aiTimer.stop(); aiTimer = null; }
     aiMoveScheduled = false;
+    searchGeneration++;
+    stopProgress();
 
     state = State.initial(randomFirst);
     phase = Phase.SELECT_MOVE;
     pendingDestination = null;
     board.setState(state);
+    board.setLastAction(null);
+    board.setHints(Collections.emptyList());
     highlightDestinations();
     status.setText("New game. Player " + state.currentPlayer() + " to move.");
     maybeAiTurn();
@@ -105,18 +189,11 @@ public class Play {
     if (phase == Phase.AI_THINKING) return;
 
     if (phase == Phase.SELECT_MOVE) {
-      Coordinates me = (state.currentPlayer() == 1)
-              ? state.playerOnePosition()
-              : state.playerTwoPosition();
-
-      for (Coordinates dest : state.legalDestinationsFrom(me)) {
-        if (dest.rowIndex == cell.rowIndex && dest.columnIndex == cell.columnIndex) {
-          pendingDestination = cell;
-          phase = Phase.SELECT_REMOVE;
-          highlightRemovals();
-          status.setText("Choose a token to remove.");
-          return;
-        }
+      if (state.isLegalDestination(cell)) {
+        pendingDestination = cell;
+        phase = Phase.SELECT_REMOVE;
+        highlightRemovals();
+        status.setText("Choose a token to remove.");
       }
     } else if (phase == Phase.SELECT_REMOVE) {
       if (cell.rowIndex == pendingDestination.rowIndex
@@ -125,19 +202,8 @@ public class Play {
         return;
       }
 
-      boolean isLegalRemovalForThisDestination = false;
-      for (Action a : state.legalActions()) {
-        boolean sameDestination =
-                (a.destinationCell.rowIndex == pendingDestination.rowIndex) &&
-                        (a.destinationCell.columnIndex == pendingDestination.columnIndex);
-        boolean sameRemoval =
-                (a.tokenToRemove.rowIndex == cell.rowIndex) &&
-                        (a.tokenToRemove.columnIndex == cell.columnIndex);
-        if (sameDestination && sameRemoval) {
-          isLegalRemovalForThisDestination = true;
-          break;
-        }
-      }
+      boolean isLegalRemovalForThisDestination =
+              (state.removableMaskAfterMoveTo(pendingDestination) & (1L << cell.cellIndex())) != 0;
       if (!isLegalRemovalForThisDestination) {
         status.setText("That token can't be removed after your move. Pick another.");
         return;
@@ -153,6 +219,8 @@ public class Play {
   private void advance(Action a) {
     state = state.apply(a);
     board.setState(state);
+    board.setLastAction(a);
+    board.setHints(Collections.emptyList());
     pendingDestination = null;
 
     int w = state.winnerIfTerminal();
@@ -182,38 +250,118 @@ public class Play {
       status.setText("AI thinking...");
       aiTimer = new javax.swing.Timer(350, e -> {
         ((Timer) e.getSource()).stop();
-        aiMoveScheduled = false;
-        advance(currentAgent.choose(state));
+        startSearch(currentAgent);
       });
       aiTimer.setRepeats(false);
       aiTimer.start();
     }
   }
 
+  /**
+   * Run the agent's search on a background thread so the window stays responsive, then play its
+   * move on the EDT unless the game was reset in the meantime. If the search fails, the AI's turn
+   * is abandoned and the error shown, so the window does not stay stuck thinking.
+   * @param agent the agent to move
+   */
+  private void startSearch(Agent agent) {
+    final int generation = searchGeneration;
+    final State position = state;
+    latestProgress.set(null);
+    progressTimer.start();
+    Thread search = new Thread(() -> {
+      Action move;
+      try {
+        move = agent.choose(position);
+      } catch (RuntimeException | Error e) {
+        SwingUtilities.invokeLater(() -> {
+          if (generation != searchGeneration) return;
+          stopProgress();
+          aiMoveScheduled = false;
+          phase = Phase.SELECT_MOVE;
+          highlightDestinations();
+          status.setText("AI search failed (" + e + "). Move for it or start a new game.");
+        });
+        if (e instanceof Error) throw (Error) e;
+        return;
+      }
+      SwingUtilities.invokeLater(() -> {
+        if (generation != searchGeneration) return;
+        stopProgress();
+        aiMoveScheduled = false;
+        advance(move);
+      });
+    }, "ai-search");
+    search.setDaemon(true);
+    search.start();
+  }
+
+  /**
+   * Rank the best moves for the human to move on a background thread and mark them on the board.
+   */
+  private void showHints() {
+    if (phase == Phase.AI_THINKING || state.winnerIfTerminal() != 0) return;
+    final State position = state;
+    hintBtn.setEnabled(false);
+    status.setText("Looking for hints...");
+    Thread search = new Thread(() -> {
+      List<AnalysisLine> lines;
+      try {
+        lines = hintAgent.analyze(position, HINT_LINES);
+      } catch (RuntimeException e) {
+        SwingUtilities.invokeLater(() -> {
+          hintBtn.setEnabled(true);
+          if (state == position) status.setText("Hint search failed (" + e + ").");
+        });
+        return;
+      }
+      SwingUtilities.invokeLater(() -> {
+        hintBtn.setEnabled(true);
+        if (state != position) return;
+        if (lines.isEmpty()) {
+          status.setText("No hints: the search ran out of time.");
+          return;
+        }
+        board.setHints(lines);
+        StringBuilder text = new StringBuilder("Hints:");
+        for (AnalysisLine line : lines) {
+          text.append(String.format("  %d. %s (%s)", line.rank, EngineProtocol.formatMove(line.move), MinMaxAgent.formatScore(line.score)));
+        }
+        status.setText(text.toString());
+      });
+    }, "hint-search");
+    search.setDaemon(true);
+    search.start();
+  }
+
+  /**
+   * Show the latest search snapshot in the status bar and, if analysis is on, on the board.
+   */
+  private void showProgress() {
+    SearchProgress p = latestProgress.get();
+    if (p == null) return;
+    status.setText(String.format("AI thinking... depth %d, move %d/%d, best %s, score %s, %,d nodes, %,.0f nodes/s",
+            p.depth, p.rootMovesSearched, p.rootMoveCount,
+            p.bestMove == null ? "-" : EngineProtocol.formatMove(p.bestMove), MinMaxAgent.formatScore(p.score), p.nodes, p.nodesPerSecond()));
+    if (analysisBox.isSelected()) board.setAnalysisMove(p.bestMove);
+  }
+
+  private void stopProgress() {
+    if (progressTimer != null) progressTimer.stop();
+    board.setAnalysisMove(null);
+  }
+
   /**
    * Highlight the legal move destinations for the current player.
    */
   private void highlightDestinations() {
-    Coordinates me = (state.currentPlayer() == 1)
-            ? state.playerOnePosition()
-            : state.playerTwoPosition();
-    board.setHighlights(state.legalDestinationsFrom(me));
+    board.setHighlights(State.cellsOf(state.destinationMask(state.currentPlayer())));
   }
 
   /**
    * Highlight the tokens that can be removed after moving to the pending destination.
    */
   private void highlightRemovals() {
-    java.util.List<Coordinates> removable = new java.util.ArrayList<>();
-    for (Action a : state.legalActions()) {
-      boolean sameDestination =
-              (a.destinationCell.rowIndex == pendingDestination.rowIndex) &&
-                      (a.destinationCell.columnIndex == pendingDestination.columnIndex);
-      if (sameDestination) {
-        removable.add(a.tokenToRemove);
-      }
-    }
-    board.setHighlights(removable);
+    board.setHighlights(State.cellsOf(state.removableMaskAfterMoveTo(pendingDestination)));
   }
 
   /**
@@ -221,7 +369,7 @@ public class Play {
    * @param args
    */
   public static void main(String[] args) {
-    String[] opts = {"Player vs Player", "Player vs Computer", "Player vs Jerry", "Player vs Casey", "Jerry vs Casey"};
+    String[] opts = {"Player vs Player", "Player vs Computer", "Player vs Jerry", "Player vs Casey", "Jerry vs Casey", "Replay"};
     int pick = JOptionPane.showOptionDialog(
             null, "Choose mode", "Isolation",
             JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE,
@@ -231,6 +379,36 @@ public class Play {
     if (pick == JOptionPane.CLOSED_OPTION) System.exit(0);
 
     String chosenMode = opts[pick];
+    if (chosenMode.equals("Replay")) {
+      GameRecord record = pickRecordedGame();
+      if (record == null) System.exit(0);
+      SwingUtilities.invokeLater(() -> new Play(record));
+      return;
+    }
     SwingUtilities.invokeLater(() -> new Play(chosenMode));
   }
+
+  /**
+   * Ask for a game-record file and a game number within it.
+   * @return the chosen game, or null if the user cancelled or the file could not be read
+   */
+  private static GameRecord pickRecordedGame() {
+    JFileChooser chooser = new JFileChooser();
+    if (chooser.showOpenDialog(null) != JFileChooser.APPROVE_OPTION) return null;
+
+    try (GameRecordReader reader = new GameRecordReader(chooser.getSelectedFile().toPath())) {
+      int games = reader.size();
+      if (games == 0) {
+        JOptionPane.showMessageDialog(null, "No games in " + chooser.getSelectedFile());
+        return null;
+      }
+      String answer = JOptionPane.showInputDialog(null, "Game number (1-" + games + ")", "1");
+      if (answer == null) return null;
+      int index = Integer.parseInt(answer.trim()) - 1;
+      return reader.get(Math.max(0, Math.min(index, games - 1)));
+    } catch (IOException | NumberFormatException e) {
+      JOptionPane.showMessageDialog(null, "Could not load game: " + e.getMessage());
+      return null;
+    }
+  }
 }
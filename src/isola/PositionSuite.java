@@ -0,0 +1,232 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs an agent on every position of a {@link TestPosition} suite and reports the solve rate,
+ * time to solution and nodes to solution, optionally against a baseline report.
+ *
+ * Positions run one at a time by default, each with a fresh agent, so that the timings are not
+ * skewed by searches competing for cores and clock boosts; running several at once is opt-in and
+ * meant for quick solve-rate checks. For a {@link MinMaxAgent} the search is followed through its
+ * {@link SearchListener}: the time and node count to solution are taken from the first snapshot
+ * after which the reported best move was a best move and stayed one. For other agents they are
+ * the whole move time and no node count.
+ *
+ * The report is a CSV file with one row per position (id, solved, move, millis, nodes), with
+ * "n/a" where a value is not known, and a report from an earlier run can be passed back in as the
+ * baseline.
+ */
+public class PositionSuite {
+  private static final String NOT_AVAILABLE = "n/a";
+
+  /**
+   * The outcome of one position.
+   */
+  public static final class Outcome {
+    public final String id;
+    public final boolean solved;
+    public final String move;
+    public final long millis;
+    public final long nodes;
+
+    public Outcome(String id, boolean solved, String move, long millis, long nodes) {
+      this.id = id;
+      this.solved = solved;
+      this.move = move;
+      this.millis = millis;
+      this.nodes = nodes;
+    }
+  }
+
+  private final String agentSpec;
+  private final long timeLimitMillis;
+  private final int threads;
+
+  /**
+   * Creates a runner.
+   * @param agentSpec the agent to test, as accepted by {@link AgentFactory#byName(String)}
+   * @param timeLimitMillis time limit per position for minimax agents, 0 for none (the depth in the spec still applies)
+   * @param threads number of positions searched at once; use 1 when the timings matter
+   */
+  public PositionSuite(String agentSpec, long timeLimitMillis, int threads) {
+    this.agentSpec = agentSpec;
+    this.timeLimitMillis = timeLimitMillis;
+    this.threads = threads;
+  }
+
+  /**
+   * Runs every position and returns the outcomes in suite order.
+   * @param positions the suite
+   * @return
+   */
+  public List<Outcome> run(List<TestPosition> positions) throws IOException, InterruptedException {
+    AgentFactory.byName(agentSpec); // fail early on a bad spec
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Outcome>> futures = new ArrayList<>();
+      for (TestPosition position : positions) futures.add(pool.submit(() -> solve(position)));
+      List<Outcome> outcomes = new ArrayList<>();
+      for (Future<Outcome> future : futures) {
+        try {
+          outcomes.add(future.get());
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("position search failed", e.getCause());
+        }
+      }
+      return outcomes;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private Outcome solve(TestPosition position) throws IOException {
+    Agent agent = AgentFactory.byName(agentSpec);
+    long[] solvedAt = {-1, -1}; // millis, nodes of the first snapshot in the current run of best moves
+    if (agent instanceof MinMaxAgent) {
+      MinMaxAgent minimax = (MinMaxAgent) agent;
+      minimax.setTimeLimit(timeLimitMillis);
+      minimax.setSearchListener(progress -> {
+        if (!position.isBestMove(progress.bestMove)) {
+          solvedAt[0] = -1;
+        } else if (solvedAt[0] < 0) {
+          solvedAt[0] = progress.elapsedMillis;
+          solvedAt[1] = progress.nodes;
+        }
+      }, 0);
+    }
+
+    long start = System.nanoTime();
+    Action move = agent.choose(position.state());
+    long millis = (System.nanoTime() - start) / 1_000_000L;
+    boolean solved = position.isBestMove(move);
+    if (solved && solvedAt[0] >= 0) return new Outcome(position.id(), true, EngineProtocol.formatMove(move), solvedAt[0], solvedAt[1]);
+    return new Outcome(position.id(), solved, EngineProtocol.formatMove(move), solved ? millis : -1, -1);
+  }
+
+  /**
+   * Writes outcomes as a CSV report.
+   * @param outcomes
+   * @param path
+   * @throws IOException
+   */
+  public static void writeReport(List<Outcome> outcomes, Path path) throws IOException {
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+      out.println("id,solved,move,millis,nodes");
+      for (Outcome o : outcomes) {
+        out.println(o.id + "," + o.solved + "," + o.move + "," + orNotAvailable(o.millis) + "," + orNotAvailable(o.nodes));
+      }
+    }
+  }
+
+  /**
+   * Reads a CSV report written by {@link #writeReport}.
+   * @param path
+   * @return the outcomes by position id
+   * @throws IOException
+   */
+  public static Map<String, Outcome> readReport(Path path) throws IOException {
+    Map<String, Outcome> outcomes = new HashMap<>();
+    List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+    for (int i = 1; i < lines.size(); i++) {
+      String[] fields = lines.get(i).split(",");
+      if (fields.length != 5) continue;
+      outcomes.put(fields[0], new Outcome(fields[0], Boolean.parseBoolean(fields[1]), fields[2],
+              parseOrNotAvailable(fields[3]), parseOrNotAvailable(fields[4])));
+    }
+    return outcomes;
+  }
+
+  /** Formats a measurement, with "n/a" for the -1 that marks an unknown one. */
+  private static String orNotAvailable(long value) {
+    return (value >= 0) ? Long.toString(value) : NOT_AVAILABLE;
+  }
+
+  private static long parseOrNotAvailable(String field) {
+    return field.equals(NOT_AVAILABLE) ? -1 : Long.parseLong(field);
+  }
+
+  /**
+   * Prints the per-position results and the summary, comparing against a baseline if one is given.
+   * @param outcomes this run
+   * @param baseline an earlier run by position id, or null
+   * @return the number of positions solved in the baseline but not in this run
+   */
+  public static int printSummary(List<Outcome> outcomes, Map<String, Outcome> baseline) {
+    int solved = 0, regressions = 0, fixes = 0;
+    long totalMillis = 0;
+    double logTimeRatio = 0;
+    int timed = 0;
+    for (Outcome o : outcomes) {
+      Outcome before = (baseline == null) ? null : baseline.get(o.id);
+      String change = "";
+      if (before != null && before.solved && !o.solved) { change = "  REGRESSION"; regressions++; }
+      if (before != null && !before.solved && o.solved) { change = "  fixed"; fixes++; }
+      if (before != null && before.solved && o.solved && before.millis > 0 && o.millis > 0) {
+        logTimeRatio += Math.log((double) o.millis / before.millis);
+        timed++;
+        change = String.format("  time x%.2f", (double) o.millis / before.millis);
+      }
+      if (o.solved) { solved++; totalMillis += o.millis; }
+      System.out.printf("%-20s %-8s %s %8s ms %10s nodes%s%n", o.id, o.solved ? "solved" : "FAILED", o.move,
+              o.solved ? orNotAvailable(o.millis) : "-", orNotAvailable(o.nodes), change);
+    }
+    System.out.println("----------------------------------------------------------------");
+    System.out.printf("Solved %d/%d (%.1f%%), total time to solution %d ms%n",
+            solved, outcomes.size(), 100.0 * solved / Math.max(1, outcomes.size()), totalMillis);
+    if (baseline != null) {
+      long baselineSolved = baseline.values().stream().filter(o -> o.solved).count();
+      System.out.printf("Baseline solved %d/%d | %d regressions, %d fixed", baselineSolved, baseline.size(), regressions, fixes);
+      if (timed > 0) System.out.printf(" | time to solution x%.2f (geometric mean over %d)", Math.exp(logTimeRatio / timed), timed);
+      System.out.println();
+    }
+    return regressions;
+  }
+
+  /**
+   * Runs a suite from the command line. Exits with status 1 if a baseline is given and a position
+   * it solved is no longer solved.
+   * @param args suite file, agent spec, then optional --millis N, --threads N, --report FILE, --baseline FILE
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 2) {
+      System.err.println("usage: PositionSuite <suite> <agent> [--millis N] [--threads N] [--report FILE] [--baseline FILE]");
+      System.exit(2);
+    }
+    long millis = 0;
+    int threads = 1;
+    Path report = null, baselinePath = null;
+    for (int i = 2; i + 1 < args.length; i += 2) {
+      switch (args[i]) {
+        case "--millis": millis = Long.parseLong(args[i + 1]); break;
+        case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+        case "--report": report = Paths.get(args[i + 1]); break;
+        case "--baseline": baselinePath = Paths.get(args[i + 1]); break;
+        default: throw new IllegalArgumentException("unknown option: " + args[i]);
+      }
+    }
+
+    List<TestPosition> positions = TestPosition.readSuite(Paths.get(args[0]));
+    Map<String, Outcome> baseline = (baselinePath == null) ? null : readReport(baselinePath);
+    List<Outcome> outcomes = new PositionSuite(args[1], millis, threads).run(positions);
+    if (report != null) writeReport(outcomes, report);
+    int regressions = printSummary(outcomes, baseline);
+    if (regressions > 0) System.exit(1);
+  }
+}
@@ -0,0 +1,275 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.io.PrintStream;
+
+/**
+ * Proof-number search: proves a position won or lost for the player to move.
+ *
+ * The search keeps an explicit AND/OR tree. Each iteration walks from the root to the most-proving
+ * leaf, expands it, and updates the proof and disproof numbers back up the path. A node whose
+ * value is settled no longer needs its subtree, so the subtree is dropped right away. Only the
+ * root keeps its children, so the winning move can be reported. The tree size is bounded by
+ * {@code maxNodes}; if an expansion would exceed it, the search stops with {@link Result#UNKNOWN}.
+ *
+ * Children are created from the cached cell masks of the parent without building their states
+ * (a position is rebuilt only along the path being expanded), and immediate wins are settled at
+ * creation.
+ */
+public class ProofNumberSearch {
+  public enum Result { WIN, LOSS, UNKNOWN }
+
+  private static final int INFINITY = 1_000_000_000;
+
+  private final long maxNodes;
+  private final long maxMillis;
+  private final PrintStream progress;
+  private final long progressIntervalMillis;
+
+  private Node root;
+  private int rootPlayer;
+  private long liveNodes;
+  private long nodesCreated;
+  private long startNanos;
+
+  /**
+   * A node of the proof tree. Moves are packed as destination cell * 64 + removed cell.
+   */
+  private static final class Node {
+    final Node parent;
+    final short move;
+    Node[] children;
+    int proof;
+    int disproof;
+
+    Node(Node parent, short move, int proof, int disproof) {
+      this.parent = parent;
+      this.move = move;
+      this.proof = proof;
+      this.disproof = disproof;
+    }
+
+    boolean isSolved() { return proof == 0 || disproof == 0; }
+  }
+
+  /**
+   * Creates a solver.
+   * @param maxNodes largest number of tree nodes held at once
+   * @param maxMillis give up after this many milliseconds
+   * @param progress where to print progress lines, or null for none
+   * @param progressIntervalMillis time between progress lines
+   */
+  public ProofNumberSearch(long maxNodes, long maxMillis, PrintStream progress, long progressIntervalMillis) {
+    this.maxNodes = maxNodes;
+    this.maxMillis = maxMillis;
+    this.progress = progress;
+    this.progressIntervalMillis = progressIntervalMillis;
+  }
+
+  /**
+   * Tries to prove the position won or lost for the player to move.
+   * @param state the position
+   * @return WIN or LOSS if proven, UNKNOWN if the node or time limit was reached first
+   */
+  public Result solve(State state) {
+    rootPlayer = state.currentPlayer();
+    startNanos = System.nanoTime();
+    nodesCreated = 1;
+    liveNodes = 1;
+    root = new Node(null, (short) -1, 1, 1);
+    if (state.winnerIfTerminal() != 0) {
+      root.proof = INFINITY;
+      root.disproof = 0;
+      return Result.LOSS;
+    }
+
+    long deadline = startNanos + maxMillis * 1_000_000L;
+    long nextReport = startNanos + progressIntervalMillis * 1_000_000L;
+    while (!root.isSolved()) {
+      long now = System.nanoTime();
+      if (now - deadline > 0) break;
+      if (progress != null && now - nextReport > 0) {
+        reportProgress(now);
+        nextReport = now + progressIntervalMillis * 1_000_000L;
+      }
+
+      Node node = root;
+      State position = state;
+      while (node.children != null) {
+        node = selectChild(node, isOrNode(position));
+        position = position.apply(unpack(node.move));
+      }
+      if (!expand(node, position)) break;
+      update(node);
+    }
+    if (progress != null) reportProgress(System.nanoTime());
+
+    if (root.proof == 0) return Result.WIN;
+    if (root.disproof == 0) return Result.LOSS;
+    return Result.UNKNOWN;
+  }
+
+  /**
+   * Returns a winning move after {@link #solve(State)} returned WIN, otherwise null.
+   * @return
+   */
+  public Action winningMove() {
+    if (root == null || root.proof != 0 || root.children == null) return null;
+    for (Node child : root.children) {
+      if (child.proof == 0) return unpack(child.move);
+    }
+    return null;
+  }
+
+  public long nodesCreated() { return nodesCreated; }
+  public long liveNodes() { return liveNodes; }
+
+  /**
+   * Nodes where the root player is to move are OR nodes: one proven child proves them.
+   */
+  private boolean isOrNode(State position) {
+    return position.currentPlayer() == rootPlayer;
+  }
+
+  private static Node selectChild(Node node, boolean orNode) {
+    Node best = null;
+    for (Node child : node.children) {
+      if (orNode ? child.proof == node.proof : child.disproof == node.disproof) return child;
+      if (best == null || (orNode ? child.proof < best.proof : child.disproof < best.disproof)) best = child;
+    }
+    return best;
+  }
+
+  /**
+   * Creates the children of a leaf. Moves that leave the opponent without a destination are
+   * settled on the spot; other children start with proof and disproof numbers based on the
+   * opponent's mobility.
+   * @return false if the node limit does not allow the expansion
+   */
+  private boolean expand(Node node, State position) {
+    int mover = position.currentPlayer();
+    boolean moverIsRoot = mover == rootPlayer;
+    long destinations = position.destinationMask(mover);
+    Coordinates opponent = (mover == 1) ? position.playerTwoPosition() : position.playerOnePosition();
+    long opponentBit = 1L << opponent.cellIndex();
+    long opponentNeighbors = State.NEIGHBOR_MASKS[opponent.cellIndex()];
+
+    int count = 0;
+    for (long d = destinations; d != 0; d &= d - 1) {
+      count += Long.bitCount(position.removableMaskAfterMoveTo(Coordinates.ofCellIndex(Long.numberOfTrailingZeros(d))));
+    }
+    if (liveNodes + count > maxNodes) return false;
+
+    Node[] children = new Node[count];
+    int i = 0;
+    for (long d = destinations; d != 0; d &= d - 1) {
+      int destination = Long.numberOfTrailingZeros(d);
+      long removable = position.removableMaskAfterMoveTo(Coordinates.ofCellIndex(destination));
+      long open = position.availableMask() & ~(1L << destination) & ~opponentBit;
+      for (long m = removable; m != 0; m &= m - 1) {
+        int removed = Long.numberOfTrailingZeros(m);
+        int replies = Long.bitCount(opponentNeighbors & open & ~(1L << removed));
+        int proof, disproof;
+        if (replies == 0) {
+          // The mover wins on the spot.
+          proof = moverIsRoot ? 0 : INFINITY;
+          disproof = moverIsRoot ? INFINITY : 0;
+        } else if (moverIsRoot) {
+          // The child is an AND node: every reply has to be answered.
+          proof = replies;
+          disproof = 1;
+        } else {
+          proof = 1;
+          disproof = replies;
+        }
+        children[i++] = new Node(node, (short) (destination * 64 + removed), proof, disproof);
+      }
+    }
+    node.children = children;
+    liveNodes += count;
+    nodesCreated += count;
+    return true;
+  }
+
+  /**
+   * Recomputes proof and disproof numbers from the expanded node up to the root, dropping the
+   * subtrees of nodes that become solved.
+   */
+  private void update(Node node) {
+    boolean orNode = isOrNodeAt(node);
+    while (node != null) {
+      int proof, disproof;
+      if (orNode) {
+        proof = INFINITY;
+        disproof = 0;
+        for (Node child : node.children) {
+          proof = Math.min(proof, child.proof);
+          disproof = Math.min(INFINITY, disproof + child.disproof);
+        }
+      } else {
+        proof = 0;
+        disproof = INFINITY;
+        for (Node child : node.children) {
+          proof = Math.min(INFINITY, proof + child.proof);
+          disproof = Math.min(disproof, child.disproof);
+        }
+      }
+      boolean changed = proof != node.proof || disproof != node.disproof;
+      node.proof = proof;
+      node.disproof = disproof;
+      if (node.isSolved() && node != root) release(node);
+      if (!changed && node.children != null) break;
+      node = node.parent;
+      orNode = !orNode;
+    }
+  }
+
+  private boolean isOrNodeAt(Node node) {
+    int depth = 0;
+    for (Node n = node; n != root; n = n.parent) depth++;
+    return depth % 2 == 0;
+  }
+
+  /**
+   * Drops the subtree below a solved node.
+   */
+  private void release(Node node) {
+    if (node.children == null) return;
+    for (Node child : node.children) release(child);
+    liveNodes -= node.children.length;
+    node.children = null;
+  }
+
+  private void reportProgress(long now) {
+    double seconds = Math.max(1e-9, (now - startNanos) / 1e9);
+    progress.printf("pn=%s dn=%s | nodes: %d created, %d live | %.0f nodes/s%n",
+            format(root.proof), format(root.disproof), nodesCreated, liveNodes, nodesCreated / seconds);
+  }
+
+  private static String format(int number) {
+    return (number >= INFINITY) ? "inf" : Integer.toString(number);
+  }
+
+  private static Action unpack(short move) {
+    return new Action(Coordinates.ofCellIndex(move / 64), Coordinates.ofCellIndex(move % 64));
+  }
+
+  /**
+   * Solves a position given as an engine-protocol position command.
+   * @param args max nodes, then the position, e.g. "position cells 1111... c3 e4 1"
+   */
+  public static void main(String[] args) {
+    if (args.length < 3) {
+      System.err.println("usage: ProofNumberSearch <maxNodes> position (startpos ... | cells ...)");
+      System.exit(2);
+    }
+    long maxNodes = Long.parseLong(args[0]);
+    State state = EngineProtocol.parsePosition(String.join(" ", java.util.Arrays.copyOfRange(args, 1, args.length)));
+    ProofNumberSearch search = new ProofNumberSearch(maxNodes, Long.MAX_VALUE / 2_000_000L, System.out, 1000);
+    Result result = search.solve(state);
+    System.out.println("Result for player " + state.currentPlayer() + ": " + result);
+    if (result == Result.WIN) System.out.println("Winning move: " + EngineProtocol.formatMove(search.winningMove()));
+  }
+}
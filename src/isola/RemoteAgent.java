@@ -0,0 +1,153 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An agent that asks an engine in another process for its moves over the {@link EngineProtocol},
+ * either by launching it and talking over its stdin/stdout or by connecting to an
+ * {@link EngineHost} / {@link MatchServer} socket. Lets {@link ExperimentRunner}-style matches pit
+ * separate engine builds against each other.
+ */
+public class RemoteAgent implements Agent, Closeable {
+  private static final int BUSY_RETRIES = 8;
+  private static final long FIRST_BUSY_DELAY_MILLIS = 50;
+  private static final long MAX_BUSY_DELAY_MILLIS = 2_000;
+
+  private final BufferedReader in;
+  private final Writer out;
+  private final Closeable connection;
+  private final String name;
+
+  /**
+   * Performs the handshake; closes the connection if it fails.
+   */
+  private RemoteAgent(InputStream input, OutputStream output, Closeable connection) throws IOException {
+    this.in = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    this.out = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+    this.connection = connection;
+
+    try {
+      send("isola\n");
+      String engineName = "engine";
+      String line;
+      while (!(line = readLine()).equals("isolaok")) {
+        if (line.startsWith("id name ")) engineName = line.substring(8);
+      }
+      this.name = engineName;
+    } catch (IOException | RuntimeException e) {
+      closeQuietly(connection);
+      throw e;
+    }
+  }
+
+  /**
+   * Connects to an engine listening on a socket.
+   * @param host
+   * @param port
+   * @return
+   * @throws IOException if the connection or handshake fails
+   */
+  public static RemoteAgent connect(String host, int port) throws IOException {
+    Socket socket = new Socket(host, port);
+    try {
+      socket.setTcpNoDelay(true);
+      return new RemoteAgent(socket.getInputStream(), socket.getOutputStream(), socket);
+    } catch (IOException | RuntimeException e) {
+      closeQuietly(socket);
+      throw e;
+    }
+  }
+
+  /**
+   * Launches an engine process that speaks the protocol on stdin/stdout.
+   * @param command the command line of the engine
+   * @return
+   * @throws IOException if the process cannot be started or the handshake fails
+   */
+  public static RemoteAgent launch(String... command) throws IOException {
+    Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    return new RemoteAgent(process.getInputStream(), process.getOutputStream(), process::destroy);
+  }
+
+  /**
+   * Sends the position and waits for the engine's move. A server that answers "error busy" is
+   * asked again after a growing delay, up to {@value #BUSY_RETRIES} times.
+   * @param state the current state of the game
+   * @return the engine's move
+   * @throws IllegalStateException if the engine reports an error, stays busy, or has no legal move
+   * @throws UncheckedIOException if the connection fails
+   */
+  @Override
+  public Action choose(State state) {
+    try {
+      long delay = FIRST_BUSY_DELAY_MILLIS;
+      for (int attempt = 0; ; attempt++) {
+        send(EngineProtocol.formatPosition(state) + "\ngo\n");
+        String line = readLine();
+        while (!line.startsWith("bestmove ") && !line.startsWith("error ")) line = readLine();
+
+        if (line.startsWith("bestmove ")) {
+          String move = line.substring(9).trim();
+          if (move.equals("none")) throw new IllegalStateException(name + ": no legal move in this position");
+          return EngineProtocol.parseMove(move);
+        }
+        if (!line.equals("error busy") || attempt == BUSY_RETRIES) throw new IllegalStateException(name + ": " + line);
+        Thread.sleep(delay);
+        delay = Math.min(2 * delay, MAX_BUSY_DELAY_MILLIS);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(name + ": interrupted while the engine was busy", e);
+    }
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      send("quit\n");
+    } catch (IOException ignored) {
+      // The engine is already gone.
+    } finally {
+      connection.close();
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    try {
+      closeable.close();
+    } catch (IOException ignored) {
+      // Already failing; the original error is the one to report.
+    }
+  }
+
+  private void send(String text) throws IOException {
+    out.write(text);
+    out.flush();
+  }
+
+  private String readLine() throws IOException {
+    String line = in.readLine();
+    if (line == null) throw new IOException(name + " closed the connection");
+    return line;
+  }
+}
@@ -0,0 +1,42 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+/**
+ * Techniques of {@link MinMaxAgent}'s search that can be switched off one at a time, to measure
+ * what each is worth: for example a {@link Tournament} of {@code casey@4} against
+ * {@code casey@4/-mdp}. All are on by default, except that {@link #SHUFFLE} follows the agent's
+ * randomize flag. None of them changes the score of a finished search, only its speed and, for
+ * {@link #SHUFFLE}, which of several equal moves is played.
+ */
+public enum SearchFeature {
+  /** Random expansion order. */
+  SHUFFLE("shuffle"),
+  /** Trying root moves that win on the spot first. */
+  WINS_FIRST("winsfirst"),
+  /** Narrowing windows by the fastest possible win and slowest possible loss. */
+  MATE_DISTANCE_PRUNING("mdp"),
+  /** Scoring all actions of a leaf as one {@link LeafBatch}, for a {@link FeatureHeuristic}. */
+  LEAF_BATCH("batch"),
+  /** Letting an {@link IncrementalHeuristic} follow the search line. */
+  INCREMENTAL("incremental");
+
+  /** The name used in agent specs (see {@link AgentFactory#byName(String)}). */
+  public final String specName;
+
+  SearchFeature(String specName) {
+    this.specName = specName;
+  }
+
+  /**
+   * Looks a feature up by its spec name.
+   * @param specName the name, e.g. "mdp"
+   * @return the feature
+   * @throws IllegalArgumentException if no feature has that name
+   */
+  public static SearchFeature bySpecName(String specName) {
+    for (SearchFeature feature : values()) if (feature.specName.equals(specName)) return feature;
+    throw new IllegalArgumentException("unknown search feature: " + specName);
+  }
+}
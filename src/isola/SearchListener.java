@@ -0,0 +1,14 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+
+package isola;
+
+/**
+ * Receives progress snapshots from a running search. Called on the search thread at a throttled
+ * rate, so implementations should only hand the snapshot off (e.g. store it in an atomic
+ * reference) and return.
+ */
+public interface SearchListener {
+  void onProgress(SearchProgress progress);
+}
@@ -0,0 +1,51 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable snapshot of a running search, handed to a {@link SearchListener}.
+ */
+public final class SearchProgress {
+  public final int depth;
+  public final int rootMovesSearched;
+  public final int rootMoveCount;
+  public final Action bestMove;
+  public final List<Action> principalVariation;
+  public final int score;
+  public final long nodes;
+  public final long elapsedMillis;
+  public final boolean finished;
+
+  public SearchProgress(int depth, int rootMovesSearched, int rootMoveCount, Action bestMove,
+                        List<Action> principalVariation, int score, long nodes,
+                        long elapsedMillis, boolean finished) {
+    this.depth = depth;
+    this.rootMovesSearched = rootMovesSearched;
+    this.rootMoveCount = rootMoveCount;
+    this.bestMove = bestMove;
+    this.principalVariation = Collections.unmodifiableList(principalVariation);
+    this.score = score;
+    this.nodes = nodes;
+    this.elapsedMillis = elapsedMillis;
+    this.finished = finished;
+  }
+
+  /**
+   * Returns the search speed so far.
+   * @return nodes per second
+   */
+  public double nodesPerSecond() {
+    return nodes * 1000.0 / Math.max(1, elapsedMillis);
+  }
+
+  @Override public String toString() {
+    StringBuilder pv = new StringBuilder();
+    for (Action a : principalVariation) pv.append(' ').append(EngineProtocol.formatMove(a));
+    return String.format("depth %d, move %d/%d, score %s, %d nodes, %.0f nodes/s, pv%s",
+            depth, rootMovesSearched, rootMoveCount, MinMaxAgent.formatScore(score), nodes, nodesPerSecond(), pv);
+  }
+}
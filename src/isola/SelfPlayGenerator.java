@@ -0,0 +1,272 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Headless self-play pipeline that plays many {@link MinMaxAgent} games concurrently and samples
+ * (position, search score, game result) triples from them.
+ *
+ * Worker threads fill fixed-size batches and hand them to a bounded queue; when the writer falls
+ * behind, the workers block on that queue. Batches are recycled through a second bounded queue,
+ * so memory stays flat however long the run is. The writer streams the samples to gzip-compressed
+ * shard files of a fixed number of positions each.
+ *
+ * Game number {@code g} is played entirely from a random source derived from the run seed and
+ * {@code g}, so the same seed always produces the same games. With more than one worker the
+ * order in which games reach the shards may differ between runs.
+ *
+ * Each sample is 16 big-endian bytes: the available-cell mask (long, bit = row * 8 + column),
+ * player 1 cell, player 2 cell, side to move, game result for the side to move (+1 win, -1 loss)
+ * as bytes, then the search score for the side to move (float).
+ */
+public class SelfPlayGenerator {
+  static final int SAMPLE_BYTES = 16;
+
+  private static final int BATCH_SIZE = 256;
+  private static final long REPORT_INTERVAL_MILLIS = 10_000;
+
+  private final Path outputDirectory;
+  private final long seed;
+  private final int workerCount;
+  private final Heuristic heuristic;
+  private final int searchDepth;
+  private final double sampleRate;
+  private final long positionsPerShard;
+
+  private final AtomicLong nextGame = new AtomicLong();
+  private final AtomicLong gamesPlayed = new AtomicLong();
+  private volatile boolean stopping = false;
+
+  /**
+   * Struct-of-arrays buffer of samples passed from the workers to the writer.
+   */
+  static final class Batch {
+    final long[] availableMasks;
+    final byte[] playerOneCells;
+    final byte[] playerTwoCells;
+    final byte[] sideToMove;
+    final byte[] results;
+    final float[] scores;
+    int size = 0;
+
+    Batch(int capacity) {
+      availableMasks = new long[capacity];
+      playerOneCells = new byte[capacity];
+      playerTwoCells = new byte[capacity];
+      sideToMove = new byte[capacity];
+      results = new byte[capacity];
+      scores = new float[capacity];
+    }
+
+    boolean isFull() { return size == scores.length; }
+  }
+
+  /**
+   * Creates a generator.
+   * @param outputDirectory directory the shard files are written to (created if missing)
+   * @param seed the run seed every game is derived from
+   * @param workerCount number of concurrent self-play games
+   * @param heuristic heuristic used by both sides
+   * @param searchDepth search depth used by both sides
+   * @param sampleRate probability that a position is sampled, in (0, 1]
+   * @param positionsPerShard number of positions per shard file
+   */
+  public SelfPlayGenerator(Path outputDirectory, long seed, int workerCount, Heuristic heuristic,
+                           int searchDepth, double sampleRate, long positionsPerShard) {
+    if (workerCount < 1) throw new IllegalArgumentException("workerCount must be positive");
+    if (!(sampleRate > 0 && sampleRate <= 1)) throw new IllegalArgumentException("sampleRate must be in (0, 1]");
+    this.outputDirectory = outputDirectory;
+    this.seed = seed;
+    this.workerCount = workerCount;
+    this.heuristic = heuristic;
+    this.searchDepth = searchDepth;
+    this.sampleRate = sampleRate;
+    this.positionsPerShard = Math.max(1, positionsPerShard);
+  }
+
+  /**
+   * Runs the pipeline until the target number of positions is written or the time limit passes.
+   * @param targetPositions stop after this many positions
+   * @param maxMillis stop after this many milliseconds
+   * @return the number of positions written
+   * @throws IOException if a shard cannot be written
+   * @throws InterruptedException if the calling thread is interrupted
+   */
+  public long run(long targetPositions, long maxMillis) throws IOException, InterruptedException {
+    Files.createDirectories(outputDirectory);
+    BlockingQueue<Batch> filled = new ArrayBlockingQueue<>(2 * workerCount);
+    BlockingQueue<Batch> free = new ArrayBlockingQueue<>(3 * workerCount + 1);
+    for (int i = 0; i < 3 * workerCount + 1; i++) free.add(new Batch(BATCH_SIZE));
+
+    List<Thread> workers = new ArrayList<>();
+    for (int i = 0; i < workerCount; i++) {
+      Thread t = new Thread(() -> workerLoop(filled, free), "self-play-" + i);
+      t.setDaemon(true);
+      workers.add(t);
+      t.start();
+    }
+
+    long start = System.currentTimeMillis();
+    long lastReport = start;
+    long lastReportPositions = 0;
+    long written = 0;
+    int shardIndex = 0;
+    long inShard = 0;
+    DataOutputStream shard = null;
+    try {
+      while (written < targetPositions && System.currentTimeMillis() - start < maxMillis) {
+        Batch batch = filled.poll(100, TimeUnit.MILLISECONDS);
+        if (batch != null) {
+          for (int i = 0; i < batch.size && written < targetPositions; i++) {
+            if (shard == null) shard = openShard(shardIndex++);
+            shard.writeLong(batch.availableMasks[i]);
+            shard.writeByte(batch.playerOneCells[i]);
+            shard.writeByte(batch.playerTwoCells[i]);
+            shard.writeByte(batch.sideToMove[i]);
+            shard.writeByte(batch.results[i]);
+            shard.writeFloat(batch.scores[i]);
+            written++;
+            if (++inShard == positionsPerShard) {
+              shard.close();
+              shard = null;
+              inShard = 0;
+            }
+          }
+          batch.size = 0;
+          free.put(batch);
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - lastReport >= REPORT_INTERVAL_MILLIS) {
+          System.out.printf("%d positions | %.0f positions/s | %d games | queue %d/%d%n",
+                  written, (written - lastReportPositions) * 1000.0 / (now - lastReport),
+                  gamesPlayed.get(), filled.size(), 2 * workerCount);
+          lastReport = now;
+          lastReportPositions = written;
+        }
+      }
+    } finally {
+      stopping = true;
+      for (Thread t : workers) t.interrupt();
+      for (Thread t : workers) t.join();
+      if (shard != null) shard.close();
+    }
+
+    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+    System.out.printf("Done: %d positions from %d games in %.1f s (%.0f positions/s)%n",
+            written, gamesPlayed.get(), elapsed / 1000.0, written * 1000.0 / elapsed);
+    return written;
+  }
+
+  /**
+   * Plays games until the run stops, publishing full batches to the writer.
+   */
+  private void workerLoop(BlockingQueue<Batch> filled, BlockingQueue<Batch> free) {
+    Batch pending = new Batch(State.ROW_COUNT * State.COLUMN_COUNT);
+    try {
+      Batch batch = free.take();
+      while (!stopping) {
+        if (!playGame(nextGame.getAndIncrement(), pending)) break;
+        gamesPlayed.incrementAndGet();
+        for (int i = 0; i < pending.size; i++) {
+          if (batch.isFull()) {
+            filled.put(batch);
+            batch = free.take();
+          }
+          int j = batch.size++;
+          batch.availableMasks[j] = pending.availableMasks[i];
+          batch.playerOneCells[j] = pending.playerOneCells[i];
+          batch.playerTwoCells[j] = pending.playerTwoCells[i];
+          batch.sideToMove[j] = pending.sideToMove[i];
+          batch.results[j] = pending.results[i];
+          batch.scores[j] = pending.scores[i];
+        }
+      }
+    } catch (InterruptedException e) {
+      // The writer is shutting the run down; drop whatever is unpublished.
+    }
+  }
+
+  /**
+   * Plays one self-play game and stores its sampled positions in {@code samples}.
+   * @param game the game number, which determines all of the game's randomness
+   * @param samples receives the sampled positions, with results filled in
+   * @return false if the run stopped before the game finished
+   */
+  private boolean playGame(long game, Batch samples) {
+    Random rng = new Random(seed + game * 0x9E3779B97F4A7C15L);
+    MinMaxAgent agent = new MinMaxAgent(heuristic, searchDepth, true, rng);
+    samples.size = 0;
+
+    State state = State.initial(rng);
+    while (state.winnerIfTerminal() == 0) {
+      if (stopping) return false;
+      Action action = agent.choose(state);
+      if (rng.nextDouble() < sampleRate) {
+        int i = samples.size++;
+        samples.availableMasks[i] = state.availableMask();
+        samples.playerOneCells[i] = (byte) state.playerOnePosition().cellIndex();
+        samples.playerTwoCells[i] = (byte) state.playerTwoPosition().cellIndex();
+        samples.sideToMove[i] = (byte) state.currentPlayer();
+        samples.scores[i] = (float) agent.lastScore();
+      }
+      state = state.apply(action);
+    }
+
+    int winner = state.winnerIfTerminal();
+    for (int i = 0; i < samples.size; i++) samples.results[i] = (byte) (samples.sideToMove[i] == winner ? 1 : -1);
+    return true;
+  }
+
+  private DataOutputStream openShard(int index) throws IOException {
+    Path file = outputDirectory.resolve(String.format("positions-%05d.bin.gz", index));
+    return new DataOutputStream(new BufferedOutputStream(
+            new GZIPOutputStream(Files.newOutputStream(file), 1 << 16), 1 << 16));
+  }
+
+  /**
+   * Runs the generator from the command line.
+   * @param args output directory, then optionally: positions, seed, workers, depth, sample rate, positions per shard,
+   *             heuristic (jerry, casey or territory; default casey)
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 1) {
+      System.err.println("usage: SelfPlayGenerator <outputDir> [positions] [seed] [workers] [depth] [sampleRate] [positionsPerShard] [heuristic]");
+      System.exit(2);
+    }
+    Path out = Paths.get(args[0]);
+    long positions = (args.length > 1) ? Long.parseLong(args[1]) : 1_000_000L;
+    long seed = (args.length > 2) ? Long.parseLong(args[2]) : 1L;
+    int workers = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+    int depth = (args.length > 4) ? Integer.parseInt(args[4]) : 3;
+    double sampleRate = (args.length > 5) ? Double.parseDouble(args[5]) : 0.25;
+    long perShard = (args.length > 6) ? Long.parseLong(args[6]) : 1_000_000L;
+    String heuristicName = (args.length > 7) ? args[7] : "casey";
+    Heuristic heuristic;
+    switch (heuristicName) {
+      case "jerry": heuristic = new HeuristicOne(); break;
+      case "casey": heuristic = new HeuristicTwo(); break;
+      case "territory": heuristic = new HeuristicThree(); break;
+      default: throw new IllegalArgumentException("unknown heuristic: " + heuristicName);
+    }
+
+    SelfPlayGenerator generator = new SelfPlayGenerator(out, seed, workers, heuristic, depth, sampleRate, perShard);
+    generator.run(positions, Long.MAX_VALUE);
+  }
+}
@@ -0,0 +1,46 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+/**
+ * An agent that plays like its fallback agent until the board is small enough, then tries to
+ * prove the position with {@link ProofNumberSearch} and plays a proven winning move when it finds
+ * one. If the solver runs out of nodes or time, or proves the position lost, it uses the fallback move.
+ */
+public class SolverAgent implements Agent {
+  private final Agent fallback;
+  private final int openCellThreshold;
+  private final long maxNodes;
+  private final long maxMillis;
+
+  /**
+   * Creates a solving agent.
+   * @param fallback the agent used when the position is not proven won
+   * @param openCellThreshold start solving once at most this many cells are open (available and unoccupied)
+   * @param maxNodes node limit for each solve
+   * @param maxMillis time limit for each solve
+   */
+  public SolverAgent(Agent fallback, int openCellThreshold, long maxNodes, long maxMillis) {
+    this.fallback = fallback;
+    this.openCellThreshold = openCellThreshold;
+    this.maxNodes = maxNodes;
+    this.maxMillis = maxMillis;
+  }
+
+  @Override
+  public Action choose(State state) {
+    long pawns = (1L << state.playerOnePosition().cellIndex()) | (1L << state.playerTwoPosition().cellIndex());
+    int openCells = Long.bitCount(state.availableMask() & ~pawns);
+    if (openCells <= openCellThreshold) {
+      ProofNumberSearch search = new ProofNumberSearch(maxNodes, maxMillis, null, 0);
+      if (search.solve(state) == ProofNumberSearch.Result.WIN) return search.winningMove();
+    }
+    return fallback.choose(state);
+  }
+
+  @Override
+  public String name() {
+    return "Solver(" + fallback.name() + ")";
+  }
+}
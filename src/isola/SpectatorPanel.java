@@ -0,0 +1,178 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.swing.*;
+
+/**
+ * A grid of small boards showing many running games at once.
+ *
+ * Game threads call {@link #publish(int, State)}, which only stores the (immutable) state in an
+ * atomic slot and never waits for the EDT. A Swing timer samples the slots at a fixed frame rate;
+ * a board whose state changed is re-rendered into its own image from pre-drawn cell tiles, and only
+ * that board's rectangle is repainted. A board that receives many moves between frames is
+ * drawn once.
+ */
+public class SpectatorPanel extends JPanel {
+  private static final int CELL = 10;
+  private static final int GAP = 8;
+  private static final Color BACKGROUND = new Color(245, 245, 245);
+  private static final Color FINISHED_BORDER = new Color(220, 90, 70);
+
+  private final int boards;
+  private final int columns;
+  private final int boardWidth = State.COLUMN_COUNT * CELL;
+  private final int boardHeight = State.ROW_COUNT * CELL;
+  private final AtomicReferenceArray<State> published;
+
+  // EDT only
+  private final State[] shown;
+  private final BufferedImage[] boardImages;
+  private final BufferedImage availableTile = tile(new Color(245, 238, 195), null);
+  private final BufferedImage removedTile = tile(new Color(230, 230, 230), null);
+  private final BufferedImage playerOneTile = tile(new Color(245, 238, 195), BoardPanel.PLAYER_ONE_COLOR);
+  private final BufferedImage playerTwoTile = tile(new Color(245, 238, 195), BoardPanel.PLAYER_TWO_COLOR);
+  private final Timer frameTimer;
+
+  /**
+   * Create a spectator panel.
+   * @param boards number of boards in the grid
+   * @param framesPerSecond how often published states are picked up
+   */
+  public SpectatorPanel(int boards, int framesPerSecond) {
+    this.boards = boards;
+    this.columns = (int) Math.ceil(Math.sqrt(boards * 1.5));
+    int rows = (boards + columns - 1) / columns;
+    this.published = new AtomicReferenceArray<>(boards);
+    this.shown = new State[boards];
+    this.boardImages = new BufferedImage[boards];
+    setPreferredSize(new Dimension(GAP + columns * (boardWidth + GAP), GAP + rows * (boardHeight + GAP)));
+    setBackground(BACKGROUND);
+    frameTimer = new Timer(1000 / Math.max(1, framesPerSecond), e -> refreshChangedBoards());
+    frameTimer.start();
+  }
+
+  /**
+   * Open a window with a spectator panel. Safe to call from any thread.
+   * @param boards number of boards
+   * @param title window title
+   * @return the panel
+   */
+  public static SpectatorPanel open(int boards, String title) {
+    SpectatorPanel[] panel = new SpectatorPanel[1];
+    Runnable create = () -> {
+      panel[0] = new SpectatorPanel(boards, 15);
+      JFrame frame = new JFrame(title);
+      frame.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+      frame.add(new JScrollPane(panel[0]));
+      frame.pack();
+      frame.setVisible(true);
+    };
+    if (SwingUtilities.isEventDispatchThread()) {
+      create.run();
+    } else {
+      try {
+        SwingUtilities.invokeAndWait(create);
+      } catch (InterruptedException | InvocationTargetException e) {
+        throw new IllegalStateException("could not open spectator window", e);
+      }
+    }
+    return panel[0];
+  }
+
+  public int boardCount() { return boards; }
+
+  /**
+   * Show a state on a board. Never blocks; may be called from any thread.
+   * @param board the board index
+   * @param state the state to show
+   */
+  public void publish(int board, State state) {
+    published.lazySet(board, state);
+  }
+
+  /**
+   * Stop picking up new states.
+   */
+  public void stop() {
+    frameTimer.stop();
+  }
+
+  /**
+   * Stop picking up new states and dispose of the window, so a finished program can exit. Safe to
+   * call from any thread.
+   */
+  public void close() {
+    SwingUtilities.invokeLater(() -> {
+      frameTimer.stop();
+      Window window = SwingUtilities.getWindowAncestor(this);
+      if (window != null) window.dispose();
+    });
+  }
+
+  private void refreshChangedBoards() {
+    for (int i = 0; i < boards; i++) {
+      State state = published.get(i);
+      if (state == shown[i]) continue;
+      shown[i] = state;
+      render(i, state);
+      repaint(boardX(i), boardY(i), boardWidth, boardHeight);
+    }
+  }
+
+  private void render(int board, State state) {
+    if (boardImages[board] == null) boardImages[board] = new BufferedImage(boardWidth, boardHeight, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = boardImages[board].createGraphics();
+    for (int r = 0; r < State.ROW_COUNT; r++) {
+      for (int c = 0; c < State.COLUMN_COUNT; c++) {
+        BufferedImage tile = !state.isCellAvailable(r, c) ? removedTile : availableTile;
+        if (r == state.playerOnePosition().rowIndex && c == state.playerOnePosition().columnIndex) tile = playerOneTile;
+        if (r == state.playerTwoPosition().rowIndex && c == state.playerTwoPosition().columnIndex) tile = playerTwoTile;
+        g.drawImage(tile, c * CELL, r * CELL, null);
+      }
+    }
+    if (state.winnerIfTerminal() != 0) {
+      g.setColor(FINISHED_BORDER);
+      g.drawRect(0, 0, boardWidth - 1, boardHeight - 1);
+    }
+    g.dispose();
+  }
+
+  /**
+   * Paint the boards that intersect the clip.
+   */
+  @Override protected void paintComponent(Graphics g) {
+    super.paintComponent(g);
+    Rectangle clip = g.getClipBounds();
+    for (int i = 0; i < boards; i++) {
+      if (boardImages[i] == null) continue;
+      int x = boardX(i), y = boardY(i);
+      if (clip != null && !clip.intersects(x, y, boardWidth, boardHeight)) continue;
+      g.drawImage(boardImages[i], x, y, null);
+    }
+  }
+
+  private int boardX(int board) { return GAP + (board % columns) * (boardWidth + GAP); }
+  private int boardY(int board) { return GAP + (board / columns) * (boardHeight + GAP); }
+
+  private static BufferedImage tile(Color fill, Color pawn) {
+    BufferedImage image = new BufferedImage(CELL, CELL, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    g.setColor(fill);
+    g.fillRect(0, 0, CELL, CELL);
+    if (pawn != null) {
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      g.setColor(pawn);
+      g.fillOval(1, 1, CELL - 2, CELL - 2);
+    }
+    g.setColor(Color.GRAY);
+    g.drawRect(0, 0, CELL - 1, CELL - 1);
+    g.dispose();
+    return image;
+  }
+}
@@ -21,6 +21,15 @@ public final class State {
   private final Coordinates playerTwoPosition;
   private final int currentPlayer;  // 1 or 2
 
+  // Derived data, computed together on first use. Writing the volatile flag last publishes the
+  // other fields, so a State can still be shared between threads.
+  private long availableMask;
+  private long playerOneDestinations;
+  private long playerTwoDestinations;
+  private long removableMask;
+  private int winner;
+  private volatile boolean derived = false;
+
   /**
    * Creates a new game state with the specified parameters.
    * @param availableCells
@@ -41,9 +50,27 @@ public final class State {
    * @return
    */
   public static State initial(boolean randomizeFirstPlayer) {
+    int startingPlayer = randomizeFirstPlayer ? (new Random().nextBoolean() ? 1 : 2) : 1;
+    return initial(startingPlayer);
+  }
+
+  /**
+   * Creates the initial game state, drawing the first player from the given random source.
+   * @param rng the random source used to pick who moves first
+   * @return
+   */
+  public static State initial(Random rng) {
+    return initial(rng.nextBoolean() ? 1 : 2);
+  }
+
+  /**
+   * Creates the initial game state with the given player to move first.
+   * @param startingPlayer 1 or 2
+   * @return
+   */
+  public static State initial(int startingPlayer) {
     boolean[][] cells = new boolean[ROW_COUNT][COLUMN_COUNT];
     for (int row = 0; row < ROW_COUNT; row++) Arrays.fill(cells[row], true);
-    int startingPlayer = randomizeFirstPlayer ? (new Random().nextBoolean() ? 1 : 2) : 1;
     return new State(cells, new Coordinates(0, 2), new Coordinates(5, 2), startingPlayer);
   }
 
@@ -63,6 +90,106 @@ public final class State {
    */
   public boolean isCellAvailable(int rowIndex, int columnIndex) { return availableCells[rowIndex][columnIndex]; }
 
+  /**
+   * Returns the available cells as a bitmask, with bit (row * COLUMN_COUNT + column) set for each available cell.
+   * @return
+   */
+  public long availableMask() {
+    derive();
+    return availableMask;
+  }
+
+  /**
+   * Returns the cells the given player's pawn can move to, as a bitmask.
+   * @param player 1 or 2
+   * @return
+   */
+  public long destinationMask(int player) {
+    derive();
+    return (player == 1) ? playerOneDestinations : playerTwoDestinations;
+  }
+
+  /**
+   * Returns the number of cells the given player's pawn can move to.
+   * @param player 1 or 2
+   * @return
+   */
+  public int mobility(int player) {
+    return Long.bitCount(destinationMask(player));
+  }
+
+  /**
+   * Returns the cells the current player may remove after moving to the given destination, as a bitmask.
+   * @param destination a legal destination of the current player
+   * @return
+   */
+  public long removableMaskAfterMoveTo(Coordinates destination) {
+    derive();
+    return removableMask & ~(1L << destination.cellIndex());
+  }
+
+  /**
+   * Checks if the current player can move to the given cell.
+   * @param cell
+   * @return
+   */
+  public boolean isLegalDestination(Coordinates cell) {
+    return (destinationMask(currentPlayer) & (1L << cell.cellIndex())) != 0;
+  }
+
+  /**
+   * Checks if the given action is legal for the current player.
+   * @param action
+   * @return
+   */
+  public boolean isLegalAction(Action action) {
+    return isLegalDestination(action.destinationCell)
+            && (removableMaskAfterMoveTo(action.destinationCell) & (1L << action.tokenToRemove.cellIndex())) != 0;
+  }
+
+  /**
+   * Returns the cells of a bitmask in row-major order.
+   * @param mask
+   * @return
+   */
+  public static List<Coordinates> cellsOf(long mask) {
+    ArrayList<Coordinates> result = new ArrayList<>(Long.bitCount(mask));
+    for (long m = mask; m != 0; m &= m - 1) result.add(Coordinates.ofCellIndex(Long.numberOfTrailingZeros(m)));
+    return result;
+  }
+
+  /**
+   * Computes the cached masks and the terminal result on first use.
+   */
+  private void derive() {
+    if (derived) return;
+    long mask = 0;
+    for (int r = 0; r < ROW_COUNT; r++) {
+      for (int c = 0; c < COLUMN_COUNT; c++) {
+        if (availableCells[r][c]) mask |= 1L << (r * COLUMN_COUNT + c);
+      }
+    }
+    long playerOneBit = 1L << playerOnePosition.cellIndex();
+    long playerTwoBit = 1L << playerTwoPosition.cellIndex();
+    long open = mask & ~playerOneBit & ~playerTwoBit;
+    availableMask = mask;
+    playerOneDestinations = NEIGHBOR_MASKS[playerOnePosition.cellIndex()] & open;
+    playerTwoDestinations = NEIGHBOR_MASKS[playerTwoPosition.cellIndex()] & open;
+    removableMask = mask & ~((currentPlayer == 1) ? playerTwoBit : playerOneBit);
+    long moverDestinations = (currentPlayer == 1) ? playerOneDestinations : playerTwoDestinations;
+    winner = (moverDestinations == 0) ? ((currentPlayer == 1) ? 2 : 1) : 0;
+    derived = true;
+  }
+
+  /**
+   * Returns the canonical form of this position under board reflections and colour swap,
+   * for keying caches and tables with one entry per equivalent position.
+   * @return
+   */
+  public CanonicalPosition canonical() {
+    return CanonicalPosition.of(this);
+  }
+
   /**
    * Checks if the specified cell is occupied by either player.
    * @param rowIndex
@@ -92,21 +219,30 @@ public final class State {
    */
   private static final int[] COLUMN_DELTAS = {-1, 0, 1,-1,1,-1,0,1};
 
+  /**
+   * For each cell index, the bitmask of its in-bounds neighbours.
+   */
+  static final long[] NEIGHBOR_MASKS = new long[ROW_COUNT * COLUMN_COUNT];
+  static {
+    for (int cell = 0; cell < NEIGHBOR_MASKS.length; cell++) {
+      int r = cell / COLUMN_COUNT, c = cell % COLUMN_COUNT;
+      for (int i = 0; i < 8; i++) {
+        if (isInBounds(r + ROW_DELTAS[i], c + COLUMN_DELTAS[i])) {
+          NEIGHBOR_MASKS[cell] |= 1L << ((r + ROW_DELTAS[i]) * COLUMN_COUNT + c + COLUMN_DELTAS[i]);
+        }
+      }
+    }
+  }
+
   /**
    * Returns a list of legal destination coordinates for a pawn from the given position.
    * @param fromPosition
    * @return
    */
   public List<Coordinates> legalDestinationsFrom(Coordinates fromPosition) {
-    ArrayList<Coordinates> result = new ArrayList<>();
-    for (int i=0; i<8; i++) {
-      int newRow = fromPosition.rowIndex + ROW_DELTAS[i];
-      int newCol = fromPosition.columnIndex + COLUMN_DELTAS[i];
-      if (isInBounds(newRow,newCol) && isCellAvailable(newRow,newCol) && !isCellOccupied(newRow,newCol)) {
-        result.add(new Coordinates(newRow,newCol));
-      }
-    }
-    return result;
+    derive();
+    long occupied = (1L << playerOnePosition.cellIndex()) | (1L << playerTwoPosition.cellIndex());
+    return cellsOf(NEIGHBOR_MASKS[fromPosition.cellIndex()] & availableMask & ~occupied);
   }
 
   /**
@@ -114,27 +250,13 @@ public final class State {
    * @return
    */
   public List<Action> legalActions() {
-    Coordinates activePawn = (currentPlayer==1)? playerOnePosition : playerTwoPosition;
-    List<Coordinates> destinations = legalDestinationsFrom(activePawn);
-    ArrayList<Action> actions = new ArrayList<>();
-
-    for (Coordinates destination : destinations) {
-      for (int r=0; r<ROW_COUNT; r++) {
-        for (int c=0; c<COLUMN_COUNT; c++) {
-          if (!isCellAvailable(r, c)) continue;
-
-          boolean occupiedByOpponent =
-                  (currentPlayer==1)
-                          ? (playerTwoPosition.rowIndex==r && playerTwoPosition.columnIndex==c)
-                          : (playerOnePosition.rowIndex==r && playerOnePosition.columnIndex==c);
-
-          boolean isDestination =
-                  (r==destination.rowIndex && c==destination.columnIndex);
-
-          if (!occupiedByOpponent && !isDestination) {
-            actions.add(new Action(destination, new Coordinates(r, c)));
-          }
-        }
+    long destinations = destinationMask(currentPlayer);
+    ArrayList<Action> actions = new ArrayList<>(Long.bitCount(destinations) * Long.bitCount(removableMask));
+
+    for (long d = destinations; d != 0; d &= d - 1) {
+      Coordinates destination = Coordinates.ofCellIndex(Long.numberOfTrailingZeros(d));
+      for (long m = removableMaskAfterMoveTo(destination); m != 0; m &= m - 1) {
+        actions.add(new Action(destination, Coordinates.ofCellIndex(Long.numberOfTrailingZeros(m))));
       }
     }
     return actions;
@@ -163,11 +285,8 @@ public final class State {
    * @return 0 if the game is not over, 1 if player 1 wins, 2 if player 2 wins.
    */
   public int winnerIfTerminal() {
-    Coordinates activePawn = (currentPlayer==1)? playerOnePosition : playerTwoPosition;
-    if (legalDestinationsFrom(activePawn).isEmpty()) {
-      return (currentPlayer==1)?2:1;
-    }
-    return 0;
+    derive();
+    return winner;
   }
 
   /**
@@ -0,0 +1,76 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+/**
+ * The reflections of the 6x8 board. The rules do not care which way up the board is, so a
+ * position and its reflections have the same game-theoretic value and corresponding best moves.
+ * Every symmetry here is its own inverse.
+ */
+public enum Symmetry {
+  IDENTITY(false, false),
+  FLIP_COLUMNS(false, true),
+  FLIP_ROWS(true, false),
+  ROTATE_180(true, true);
+
+  private final boolean flipRows;
+  private final boolean flipColumns;
+
+  Symmetry(boolean flipRows, boolean flipColumns) {
+    this.flipRows = flipRows;
+    this.flipColumns = flipColumns;
+  }
+
+  /**
+   * Maps a row-major cell index.
+   * @param cell the cell index
+   * @return the index of the cell it maps to
+   */
+  public int mapCell(int cell) {
+    int r = cell / State.COLUMN_COUNT, c = cell % State.COLUMN_COUNT;
+    if (flipRows) r = State.ROW_COUNT - 1 - r;
+    if (flipColumns) c = State.COLUMN_COUNT - 1 - c;
+    return r * State.COLUMN_COUNT + c;
+  }
+
+  /**
+   * Maps a cell.
+   * @param cell the cell
+   * @return the cell it maps to
+   */
+  public Coordinates map(Coordinates cell) {
+    int r = flipRows ? State.ROW_COUNT - 1 - cell.rowIndex : cell.rowIndex;
+    int c = flipColumns ? State.COLUMN_COUNT - 1 - cell.columnIndex : cell.columnIndex;
+    return new Coordinates(r, c);
+  }
+
+  /**
+   * Maps both cells of an action.
+   * @param action the action
+   * @return the action it maps to
+   */
+  public Action map(Action action) {
+    return new Action(map(action.destinationCell), map(action.tokenToRemove));
+  }
+
+  /**
+   * Maps a 48-bit cell mask (bit = row * 8 + column). Each row is one byte, so flipping rows
+   * reverses the byte order and flipping columns reverses the bits within each byte.
+   * @param mask the mask
+   * @return the mapped mask
+   */
+  public long mapMask(long mask) {
+    if (flipColumns) mask = Long.reverseBytes(Long.reverse(mask));
+    if (flipRows) mask = Long.reverseBytes(mask) >>> (8 * (8 - State.ROW_COUNT));
+    return mask;
+  }
+
+  /**
+   * Returns the symmetry that undoes this one.
+   * @return
+   */
+  public Symmetry inverse() {
+    return this;
+  }
+}
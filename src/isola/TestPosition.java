@@ -0,0 +1,122 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A test position with its known best moves.
+ *
+ * One position per line: the 48 cell flags (row by row, 1 for available), player one's cell,
+ * player two's cell and the side to move, as in the engine protocol's "position cells" command.
+ * Then come operations separated by ';':
+ * <pre>
+ * 111111110111...11 c3 e4 1; bm c2d5 d2d5; id endgame-07
+ * </pre>
+ * "bm" lists the moves that count as solving the position (any one of them), and "id" names it.
+ * Blank lines and lines starting with '#' are ignored.
+ */
+public final class TestPosition {
+  private final String id;
+  private final State state;
+  private final List<Action> bestMoves;
+
+  public TestPosition(String id, State state, List<Action> bestMoves) {
+    this.id = id;
+    this.state = state;
+    this.bestMoves = Collections.unmodifiableList(new ArrayList<>(bestMoves));
+  }
+
+  public String id() { return id; }
+  public State state() { return state; }
+  public List<Action> bestMoves() { return bestMoves; }
+
+  /**
+   * Checks whether a move is one of the position's best moves.
+   * @param move
+   * @return
+   */
+  public boolean isBestMove(Action move) {
+    if (move == null) return false;
+    for (Action best : bestMoves) {
+      if (best.destinationCell.cellIndex() == move.destinationCell.cellIndex()
+              && best.tokenToRemove.cellIndex() == move.tokenToRemove.cellIndex()) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Parses one line of a suite file.
+   * @param line the line
+   * @param defaultId the id used when the line has no "id" operation
+   * @return the position
+   * @throws IllegalArgumentException if the line is malformed or lists an illegal best move
+   */
+  public static TestPosition parse(String line, String defaultId) {
+    String[] parts = line.split(";");
+    State state = EngineProtocol.parsePosition("position cells " + parts[0].trim());
+    String id = defaultId;
+    List<Action> bestMoves = new ArrayList<>();
+    for (int i = 1; i < parts.length; i++) {
+      String[] tokens = parts[i].trim().split("\\s+");
+      if (tokens[0].isEmpty()) continue;
+      switch (tokens[0]) {
+        case "bm":
+          for (int t = 1; t < tokens.length; t++) {
+            Action move = EngineProtocol.parseMove(tokens[t]);
+            if (!state.isLegalAction(move)) throw new IllegalArgumentException("illegal best move: " + tokens[t]);
+            bestMoves.add(move);
+          }
+          break;
+        case "id":
+          if (tokens.length != 2) throw new IllegalArgumentException("id needs one name");
+          id = tokens[1];
+          break;
+        default:
+          throw new IllegalArgumentException("unknown operation: " + tokens[0]);
+      }
+    }
+    if (bestMoves.isEmpty()) throw new IllegalArgumentException("position " + id + " has no best moves");
+    return new TestPosition(id, state, bestMoves);
+  }
+
+  /**
+   * Formats the position as a suite line.
+   * @return
+   */
+  public String format() {
+    StringBuilder sb = new StringBuilder(EngineProtocol.formatPosition(state).substring("position cells ".length()));
+    sb.append("; bm");
+    for (Action move : bestMoves) sb.append(' ').append(EngineProtocol.formatMove(move));
+    return sb.append("; id ").append(id).toString();
+  }
+
+  /**
+   * Reads every position of a suite file.
+   * @param path the suite file
+   * @return the positions in file order
+   * @throws IOException if the file cannot be read
+   * @throws IllegalArgumentException naming the line number if a line is malformed
+   */
+  public static List<TestPosition> readSuite(Path path) throws IOException {
+    List<TestPosition> positions = new ArrayList<>();
+    List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i).trim();
+      if (line.isEmpty() || line.startsWith("#")) continue;
+      try {
+        positions.add(parse(line, "line-" + (i + 1)));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(path + ":" + (i + 1) + ": " + e.getMessage(), e);
+      }
+    }
+    return positions;
+  }
+}
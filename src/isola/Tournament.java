@@ -0,0 +1,232 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Round-robin tournament between agent configurations with a live Elo estimate.
+ *
+ * Every pairing first gets a couple of games (one with each colour). After that each new game goes
+ * to the pairing where one more result is expected to shrink the uncertainty of the rating
+ * difference the most: pairings with uncertain ratings and close expected scores come first,
+ * and games already running count as played so the workers spread out. Games run on a
+ * work-stealing pool; the tournament ends when the game budget is spent.
+ */
+public class Tournament {
+  private static final int MINIMUM_GAMES_PER_PAIRING = 2;
+
+  /**
+   * A participant: a label and a factory producing a fresh agent for each game.
+   */
+  public static final class Entry {
+    final String label;
+    final Supplier<Agent> factory;
+
+    public Entry(String label, Supplier<Agent> factory) {
+      this.label = label;
+      this.factory = factory;
+    }
+  }
+
+  private final List<Entry> entries;
+  private final int gameBudget;
+  private final int parallelism;
+  private final int reportEvery;
+  private final Random seeds;
+
+  private final int[][] wins;      // wins[i][j]: games entry i won against entry j
+  private final int[][] running;   // games in progress between i and j (i < j)
+  private final int[][] scheduled; // games ever started between i and j (i < j)
+  private double[] elo;
+  private double[] errors;
+  private int gamesStarted = 0;
+  private int gamesFinished = 0;
+  private RuntimeException failure = null;
+
+  /**
+   * Creates a tournament.
+   * @param entries the participants (at least two)
+   * @param gameBudget total number of games to play
+   * @param parallelism number of games played at once
+   * @param reportEvery print the standings after this many finished games
+   * @param seed seed for the per-game first-player draws
+   */
+  public Tournament(List<Entry> entries, int gameBudget, int parallelism, int reportEvery, long seed) {
+    if (entries.size() < 2) throw new IllegalArgumentException("a tournament needs at least two entries");
+    this.entries = new ArrayList<>(entries);
+    this.gameBudget = gameBudget;
+    this.parallelism = Math.max(1, parallelism);
+    this.reportEvery = Math.max(1, reportEvery);
+    this.seeds = new Random(seed);
+    int n = entries.size();
+    wins = new int[n][n];
+    running = new int[n][n];
+    scheduled = new int[n][n];
+    elo = new double[n];
+    errors = EloEstimator.standardErrors(wins, elo);
+  }
+
+  /**
+   * Plays the whole budget and prints the final standings.
+   * @return the final Elo ratings, in entry order
+   * @throws InterruptedException if interrupted while waiting for games
+   */
+  public double[] run() throws InterruptedException {
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      synchronized (this) {
+        for (int k = 0; k < parallelism && gamesStarted < gameBudget; k++) scheduleNext(pool);
+        while (gamesFinished < gamesStarted && failure == null) wait();
+        if (failure != null) throw failure;
+      }
+    } finally {
+      pool.shutdownNow();
+      pool.awaitTermination(1, TimeUnit.MINUTES);
+    }
+    if (gamesFinished % reportEvery != 0) printStandings();
+    return elo.clone();
+  }
+
+  /**
+   * Picks the next pairing and starts a game for it. Called with the lock held.
+   */
+  private void scheduleNext(ForkJoinPool pool) {
+    int bestI = -1, bestJ = -1;
+    double bestValue = Double.NEGATIVE_INFINITY;
+    int n = entries.size();
+    for (int i = 0; i < n; i++) {
+      for (int j = i + 1; j < n; j++) {
+        double value = schedulingValue(i, j);
+        if (value > bestValue) {
+          bestValue = value;
+          bestI = i;
+          bestJ = j;
+        }
+      }
+    }
+    final int a = bestI, b = bestJ;
+    boolean aIsPlayerOne = (scheduled[a][b] % 2 == 0);
+    long gameSeed = seeds.nextLong();
+    scheduled[a][b]++;
+    running[a][b]++;
+    gamesStarted++;
+    pool.execute(() -> playAndRecord(a, b, aIsPlayerOne, gameSeed, pool));
+  }
+
+  /**
+   * How much one more game between i and j is expected to reduce the variance of their rating
+   * difference, treating running games as already played. Pairings below the minimum come first.
+   */
+  private double schedulingValue(int i, int j) {
+    int started = scheduled[i][j];
+    if (started < MINIMUM_GAMES_PER_PAIRING) return Double.MAX_VALUE / (1 + started);
+    double p = EloEstimator.expectedScore(elo[i], elo[j]);
+    double information = p * (1 - p);
+    double si = errors[i] / EloEstimator.ELO_PER_NATURAL_UNIT;
+    double sj = errors[j] / EloEstimator.ELO_PER_NATURAL_UNIT;
+    double variance = si * si + sj * sj;
+    variance /= 1 + running[i][j] * information * variance;
+    return variance * variance * information / (1 + variance * information);
+  }
+
+  private void playAndRecord(int a, int b, boolean aIsPlayerOne, long gameSeed, ForkJoinPool pool) {
+    int winnerEntry = -1;
+    RuntimeException error = null;
+    try {
+      Agent agentA = entries.get(a).factory.get();
+      Agent agentB = entries.get(b).factory.get();
+      Agent playerOne = aIsPlayerOne ? agentA : agentB;
+      Agent playerTwo = aIsPlayerOne ? agentB : agentA;
+
+      State state = State.initial(new Random(gameSeed));
+      while (state.winnerIfTerminal() == 0) {
+        Agent current = (state.currentPlayer() == 1) ? playerOne : playerTwo;
+        state = state.apply(current.choose(state));
+      }
+      boolean playerOneWon = state.winnerIfTerminal() == 1;
+      winnerEntry = (playerOneWon == aIsPlayerOne) ? a : b;
+    } catch (RuntimeException e) {
+      error = e;
+    }
+
+    synchronized (this) {
+      running[a][b]--;
+      gamesFinished++;
+      if (error != null) {
+        if (failure == null) failure = error;
+      } else {
+        int loserEntry = (winnerEntry == a) ? b : a;
+        wins[winnerEntry][loserEntry]++;
+        elo = EloEstimator.ratings(wins);
+        errors = EloEstimator.standardErrors(wins, elo);
+        if (gamesFinished % reportEvery == 0) printStandings();
+        if (gamesStarted < gameBudget) scheduleNext(pool);
+      }
+      notifyAll();
+    }
+  }
+
+  /**
+   * Prints each entry's rating with a 95% interval, its games and its score.
+   */
+  private synchronized void printStandings() {
+    int n = entries.size();
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++) order[i] = i;
+    Arrays.sort(order, Comparator.comparingDouble(i -> -elo[i]));
+
+    System.out.println("----------------------------------------------------------------");
+    System.out.printf("Standings after %d games%n", gamesFinished);
+    for (int i : order) {
+      int won = 0, played = 0;
+      for (int j = 0; j < n; j++) {
+        won += wins[i][j];
+        played += wins[i][j] + wins[j][i];
+      }
+      System.out.printf("%-32s Elo %+7.1f ± %5.1f | Games: %d | Score: %.1f%%%n",
+              entries.get(i).label, elo[i], 1.96 * errors[i], played,
+              (played == 0) ? 0.0 : 100.0 * won / played);
+    }
+    System.out.println("----------------------------------------------------------------");
+  }
+
+  /**
+   * Runs a tournament from the command line.
+   * @param args game budget, parallelism, then agent names with optional depth, time limit and
+   *             search features (see {@link AgentFactory#byName(String)}), e.g. casey@6/500ms casey@6/500ms/-mdp
+   */
+  public static void main(String[] args) throws InterruptedException {
+    int budget = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+    int parallelism = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    List<String> specs = (args.length > 2)
+            ? Arrays.asList(args).subList(2, args.length)
+            : Arrays.asList("random", "jerry@1", "casey@1", "jerry", "casey");
+
+    List<Entry> entries = new ArrayList<>();
+    for (String spec : specs) {
+      try {
+        entries.add(new Entry(AgentFactory.byName(spec).name(), () -> {
+          try {
+            return AgentFactory.byName(spec);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    new Tournament(entries, budget, parallelism, 10, 1L).run();
+  }
+}
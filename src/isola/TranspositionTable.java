@@ -0,0 +1,88 @@
+/**
+ * Adolfo Alvarez Jr
+ */
+package isola;
+
+/**
+ * A fixed-size transposition table keyed on {@link CanonicalPosition} keys.
+ *
+ * Entries live in parallel primitive arrays indexed by a hash of the key; a new entry replaces
+ * the old one in its slot unless the old one is for the same position at a greater depth. Scores
+ * are stored for the side to move, moves in canonical orientation packed as destination * 64 +
+ * removed cell. Not thread-safe: use one table per search thread.
+ */
+final class TranspositionTable {
+  static final byte EXACT = 0;
+  static final byte LOWER_BOUND = 1;
+  static final byte UPPER_BOUND = 2;
+
+  private final long[] keys;
+  private final int[] scores;
+  private final byte[] depths;
+  private final byte[] bounds;
+  private final short[] moves;
+  private final int mask;
+
+  /**
+   * Creates an empty table.
+   * @param log2Entries the table holds 2^log2Entries entries
+   */
+  TranspositionTable(int log2Entries) {
+    int size = 1 << log2Entries;
+    keys = new long[size];
+    scores = new int[size];
+    depths = new byte[size];
+    bounds = new byte[size];
+    moves = new short[size];
+    mask = size - 1;
+  }
+
+  /**
+   * Finds the slot holding a position. Canonical keys are never 0, so 0 marks an empty slot.
+   * @param key the canonical key
+   * @return the slot, or -1 if the position is not stored
+   */
+  int probe(long key) {
+    int slot = index(key);
+    return (keys[slot] == key) ? slot : -1;
+  }
+
+  int score(int slot) { return scores[slot]; }
+  int depth(int slot) { return depths[slot]; }
+  byte bound(int slot) { return bounds[slot]; }
+
+  /**
+   * Returns the stored best move in canonical orientation, or null if there is none.
+   * @param slot
+   * @return
+   */
+  Action move(int slot) {
+    short packed = moves[slot];
+    if (packed < 0) return null;
+    return new Action(Coordinates.ofCellIndex(packed / 64), Coordinates.ofCellIndex(packed % 64));
+  }
+
+  /**
+   * Stores a search result.
+   * @param key the canonical key
+   * @param depth the remaining depth the score was searched to
+   * @param score the score for the side to move
+   * @param bound {@link #EXACT}, {@link #LOWER_BOUND} or {@link #UPPER_BOUND}
+   * @param move the best move in canonical orientation, or null
+   */
+  void store(long key, int depth, int score, byte bound, Action move) {
+    int slot = index(key);
+    if (keys[slot] == key && depths[slot] > depth) return;
+    keys[slot] = key;
+    scores[slot] = score;
+    depths[slot] = (byte) depth;
+    bounds[slot] = bound;
+    moves[slot] = (move == null) ? -1
+            : (short) (move.destinationCell.cellIndex() * 64 + move.tokenToRemove.cellIndex());
+  }
+
+  private int index(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h >>> 40) & mask;
+  }
+}